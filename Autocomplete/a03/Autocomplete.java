@@ -1,10 +1,15 @@
 package a03;
 
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Implements an immutable data type that provides autocomplete functionality 
@@ -12,15 +17,36 @@ import java.util.Arrays;
  * To do so, it sorts the terms in lexicographic order; use binary search to 
  * find the set of terms that start with a given prefix; and sort the matching 
  * terms in descending order by weight.
+ * <br><br>
+ * The sorted terms are kept in a compact {@link TermStore} rather than as a Term[], 
+ * and Term objects are only created for the matches returned. Queries can be 
+ * instrumented by attaching a {@link QueryMetrics}.
  * 
  * @author Kevin Mora
  * @author Michael Barlow
  */
-public class Autocomplete {
-    private Term[] terms;
+public class Autocomplete implements AutocompleteEngine {
+    private static final int MIN_BATCH_SLICE = 1024;	// Fewest prefixes worth a parallel task.
+
+    private TermStore store;
+    private RangeMaxIndex index;	// Optional: null unless requested at construction.
+    private ShortPrefixTable shortPrefixes;	// Optional, as above.
+    private volatile QueryMetrics metrics;	// Null unless instrumentation is switched on.
 
     // Initializes the data structure from the given array of terms.
     public Autocomplete(Term[] terms) {
+        this(terms, false);
+    }
+
+    // Initializes the data structure, optionally with a range-max index over the weights 
+    // that makes topMatches touch only about k log k ranges, however wide the prefix.
+    public Autocomplete(Term[] terms, boolean rangeIndex) {
+        this(terms, rangeIndex, 0, 0);
+    }
+
+    // Initializes the data structure, additionally precomputing the top precomputeK terms 
+    // of every prefix of up to precomputeDepth characters (none if either is 0).
+    public Autocomplete(Term[] terms, boolean rangeIndex, int precomputeDepth, int precomputeK) {
         if (terms == null) {
         	throw new NullPointerException();
         }
@@ -29,74 +55,339 @@ public class Autocomplete {
                 throw new NullPointerException();
             }
         }
-        this.terms = terms;
+        if (precomputeDepth < 0 || precomputeK < 0) {
+        	throw new IllegalArgumentException();
+        }
         // Sorts the data structure, in order to make Binary Search work.
-        Arrays.sort(this.terms);
+        // parallelSort falls back to a sequential sort for small arrays.
+        Arrays.parallelSort(terms);
+        this.store = new TermStore(terms);
+        if (rangeIndex) {
+        	this.index = new RangeMaxIndex(store);
+        }
+        if (precomputeDepth > 0 && precomputeK > 0) {
+        	this.shortPrefixes = new ShortPrefixTable(store, precomputeDepth, precomputeK);
+        }
     }
 
     // Returns all terms that start with the given prefix, in descending order of weight.
+    @Override
     public Term[] allMatches(String prefix) {
     	if (prefix == null) {
         	throw new NullPointerException();
         }
+    	QueryMetrics m = metrics;
+    	if (m != null) {
+    		return allMatchesMeasured(prefix, m);
+    	}
     	
-    	int start = BinarySearchDeluxe.firstIndexOf(terms, new Term(prefix, 0), Term.byPrefixOrder(prefix.length()));
-        int end = BinarySearchDeluxe.lastIndexOf(terms, new Term(prefix, 0), Term.byPrefixOrder(prefix.length()));
-        
-        if(start == -1 || end == -1) {
-        	return new Term[0];
+    	return allMatches(store.equalRange(prefix));
+    }
+
+    // Returns all terms in the given packed range, in descending order of weight.
+    Term[] allMatches(long range) {
+        // Rank the primitive weight keys, then create the Terms in that order.
+        return terms(WeightSort.descending(store.keys(), TermStore.start(range), TermStore.end(range)));
+    }
+
+    // Materializes the terms at the given indices, in that order.
+    private Term[] terms(int[] order) {
+        Term[] matches = new Term[order.length];
+        for (int i = 0; i < matches.length; i++) {
+        	matches[i] = store.term(order[i]);
+        }
+        return matches;
+    }
+
+    // allMatches, timing and counting each phase into m.
+    private Term[] allMatchesMeasured(String prefix, QueryMetrics m) {
+    	int[] compares = new int[1];
+    	long t0 = System.nanoTime();
+    	long range = store.equalRange(prefix, 0, store.size(), compares);
+    	long t1 = System.nanoTime();
+    	int[] order = WeightSort.descending(store.keys(), TermStore.start(range), TermStore.end(range));
+    	long t2 = System.nanoTime();
+    	Term[] matches = terms(order);
+    	long t3 = System.nanoTime();
+    	m.record(QueryMetrics.ALL, prefix.length(), matches.length, compares[0],
+    			t1 - t0, t3 - t2, t2 - t1);
+    	return matches;
+    }
+
+    // Returns the k heaviest terms that start with the given prefix, in descending order of weight.
+    @Override
+    public Term[] topMatches(String prefix, int k) {
+    	if (prefix == null) {
+        	throw new NullPointerException();
+        }
+    	if (k < 0) {
+    		throw new IllegalArgumentException();
+    	}
+    	QueryMetrics m = metrics;
+    	if (shortPrefixes != null && shortPrefixes.covers(prefix, k)) {
+    		// Answered from the table, with no range search at all.
+    		long t0 = m == null ? 0 : System.nanoTime();
+    		Term[] matches = shortPrefixMatches(prefix, k);
+    		if (m != null) {
+    			m.record(QueryMetrics.TOP, prefix.length(), matches.length, 0, 0, 0, System.nanoTime() - t0);
+    		}
+    		return matches;
+    	}
+    	if (m != null) {
+    		int[] compares = new int[1];
+    		long t0 = System.nanoTime();
+    		long range = store.equalRange(prefix, 0, store.size(), compares);
+    		long t1 = System.nanoTime();
+    		Term[] matches = topMatches(prefix, range, k);
+    		long t2 = System.nanoTime();
+    		m.record(QueryMetrics.TOP, prefix.length(), TermStore.end(range) - TermStore.start(range),
+    				compares[0], t1 - t0, 0, t2 - t1);
+    		return matches;
+    	}
+    	
+    	return topMatches(prefix, store.equalRange(prefix), k);
+    }
+
+    /**
+     * Returns the k heaviest terms in the given packed range, which must be the match 
+     * range of the prefix. Short prefixes are answered from the precomputed table.
+     */
+    Term[] topMatches(String prefix, long range, int k) {
+    	if (shortPrefixes != null && shortPrefixes.covers(prefix, k)) {
+    		return shortPrefixMatches(prefix, k);
+    	}
+    	
+    	int start = TermStore.start(range),
+    		end = TermStore.end(range) - 1;
+    	if (start > end || k == 0) {
+    		return new Term[0];
+    	}
+    	if (index != null) {
+    		return topMatchesIndexed(start, end, k);
+    	}
+    	
+    	// Bounded min-heap of indices by weight key: the root is the lightest of the k 
+    	// heaviest matches seen so far, so each match costs at most O(log k) compares.
+    	KeyHeap heap = new KeyHeap(Math.min(k, end - start + 1));
+    	for (int i = start; i <= end; i++) {
+    		long key = store.key(i);
+    		if (heap.size() < k) {
+    			heap.add(key, i);
+    		}
+    		else if (key > heap.peekKey()) {
+    			heap.replaceTop(key, i);
+    		}
+    	}
+    	
+    	// Drain the heap lightest first, filling the result from the back.
+    	Term[] matches = new Term[heap.size()];
+    	for (int i = matches.length - 1; i >= 0; i--) {
+    		matches[i] = store.term(heap.poll());
+    	}
+    	return matches;
+    }
+
+    // The k heaviest matches of a prefix the short-prefix table covers.
+    private Term[] shortPrefixMatches(String prefix, int k) {
+    	int[] top = shortPrefixes.top(prefix);
+    	Term[] matches = new Term[Math.min(k, top.length)];
+    	for (int i = 0; i < matches.length; i++) {
+    		matches[i] = store.term(top[i]);
+    	}
+    	return matches;
+    }
+
+    // Returns the k heaviest matches of each prefix, in the order the prefixes are given.
+    public Term[][] batchTopMatches(String[] prefixes, int k) {
+    	return batchTopMatches(prefixes, k, null);
+    }
+
+    /**
+     * Returns the k heaviest matches of each prefix, in the order the prefixes are given. 
+     * The prefixes are sorted first, which puts the starts of their match ranges in 
+     * ascending order, so each range is found by galloping forward from the previous 
+     * one instead of searching all N terms; repeated prefixes are searched once. 
+     * @param prefixes: the prefixes to complete.
+     * @param k: maximum number of matches per prefix.
+     * @param pool: if not null, slices of the sorted prefixes are swept in parallel on it.
+     */
+    public Term[][] batchTopMatches(final String[] prefixes, final int k, ForkJoinPool pool) {
+    	if (prefixes == null) {
+        	throw new NullPointerException();
         }
-        
-        Term[] matches = new Term[numberOfMatches(prefix)];
-        matches = Arrays.copyOfRange(terms, start, end + 1);
-        
-        // Sort elements by reverse weight order
-        Arrays.sort(matches,Term.byReverseWeightOrder());
-        
-		return matches;
+    	for (String prefix : prefixes) {
+    		if (prefix == null) {
+            	throw new NullPointerException();
+            }
+    	}
+    	if (k < 0) {
+    		throw new IllegalArgumentException();
+    	}
+    	
+    	final Integer[] order = new Integer[prefixes.length];
+    	for (int i = 0; i < order.length; i++) {
+    		order[i] = i;
+    	}
+    	Arrays.sort(order, new Comparator<Integer>() {
+    		@Override
+    		public int compare(Integer i, Integer j) {
+    			return prefixes[i].compareTo(prefixes[j]);
+    		}
+    	});
+    	
+    	final Term[][] results = new Term[prefixes.length][];
+    	int slices = pool == null ? 1 : Math.max(1, Math.min(4 * pool.getParallelism(), order.length / MIN_BATCH_SLICE));
+    	if (slices == 1) {
+    		sweep(prefixes, order, 0, order.length, k, results);
+    		return results;
+    	}
+    	final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(slices);
+    	for (int i = 0; i < slices; i++) {
+    		final int from = (int) ((long) order.length * i / slices),
+    			to = (int) ((long) order.length * (i + 1) / slices);
+    		tasks.add(new RecursiveAction() {
+    			@Override
+    			protected void compute() {
+    				sweep(prefixes, order, from, to, k, results);
+    			}
+    		});
+    	}
+    	pool.invoke(new RecursiveAction() {
+    		@Override
+    		protected void compute() {
+    			invokeAll(tasks);
+    		}
+    	});
+    	return results;
+    }
+
+    // Answers prefixes[order[from..to]], in sorted order, into results.
+    private void sweep(String[] prefixes, Integer[] order, int from, int to, int k, Term[][] results) {
+    	int position = 0;	// Start of the previous prefix's range.
+    	String previous = null;
+    	Term[] previousMatches = null;
+    	for (int i = from; i < to; i++) {
+    		String prefix = prefixes[order[i]];
+    		if (prefix.equals(previous)) {
+    			results[order[i]] = previousMatches.clone();
+    			continue;
+    		}
+    		long range = store.gallopRange(prefix, position);
+    		position = TermStore.start(range);
+    		previous = prefix;
+    		previousMatches = topMatches(prefix, range, k);
+    		results[order[i]] = previousMatches;
+    	}
+    }
+
+    // Best-first expansion over the range-max index: pop the range whose heaviest term 
+    // is the heaviest overall, emit that term and push the two ranges on either side of it.
+    private Term[] topMatchesIndexed(int start, int end, int k) {
+    	int size = Math.min(k, end - start + 1);
+    	// Ranges live in parallel arrays, at most 1 + 2 * size of them; the heap orders 
+    	// their slots by the negated key of their heaviest term, so the root is the heaviest.
+    	int[] los = new int[1 + 2 * size],
+    		his = new int[los.length],
+    		maxes = new int[los.length];
+    	KeyHeap ranges = new KeyHeap(los.length);
+    	int slots = 0;
+    	los[slots] = start;
+    	his[slots] = end;
+    	maxes[slots] = index.argMax(start, end);
+    	ranges.add(-store.key(maxes[slots]), slots++);
+    	
+    	Term[] matches = new Term[size];
+    	for (int i = 0; i < size; i++) {
+    		int r = ranges.poll();
+    		int max = maxes[r];
+    		matches[i] = store.term(max);
+    		if (los[r] < max) {
+    			los[slots] = los[r];
+    			his[slots] = max - 1;
+    			maxes[slots] = index.argMax(los[r], max - 1);
+    			ranges.add(-store.key(maxes[slots]), slots++);
+    		}
+    		if (max < his[r]) {
+    			los[slots] = max + 1;
+    			his[slots] = his[r];
+    			maxes[slots] = index.argMax(max + 1, his[r]);
+    			ranges.add(-store.key(maxes[slots]), slots++);
+    		}
+    	}
+    	return matches;
     }
 
     // Returns the number of terms that start with the given prefix.
+    @Override
     public int numberOfMatches(String prefix) {
         if (prefix == null) {
         	throw new NullPointerException();
         }
-        // Creates a Term query (prefix), and initializes the weight with 0.
-        Term term = new Term(prefix, 0);
-        // Initializes "start" as the first element of the data structure:
-        // (Key[] a, Key key, Comparator<Key> comparator)
-        int start = BinarySearchDeluxe.firstIndexOf(terms, term, Term.byPrefixOrder(prefix.length()));
-        if(start < 0) {
-        	return 0;
+        QueryMetrics m = metrics;
+        if (m != null) {
+        	int[] compares = new int[1];
+        	long t0 = System.nanoTime();
+        	long range = store.equalRange(prefix, 0, store.size(), compares);
+        	int count = TermStore.end(range) - TermStore.start(range);
+        	m.record(QueryMetrics.COUNT, prefix.length(), count, compares[0], System.nanoTime() - t0, 0, 0);
+        	return count;
         }
-        int end = BinarySearchDeluxe.lastIndexOf(terms, term, Term.byPrefixOrder(prefix.length()));
-        
-        return end - start + 1;
+        long range = store.equalRange(prefix);
+        return TermStore.end(range) - TermStore.start(range);
     }
 
-    public static void main(String[] args) {
+    /**
+     * Switches query instrumentation on, recording into the given metrics, or off if 
+     * it is null. Only allMatches, topMatches and numberOfMatches are instrumented; 
+     * sessions and batches are not.
+     */
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Returns the metrics being recorded into, or null if instrumentation is off.
+    public QueryMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts a keystroke session, which narrows the previous match range as the user 
+     * types instead of searching the whole dictionary again. One session per user.
+     */
+    public AutocompleteSession session() {
+        return new AutocompleteSession(this);
+    }
+
+    // Returns the range-max index, or null if none was built.
+    RangeMaxIndex rangeIndex() {
+    	return index;
+    }
+
+    // Returns the term store, for sessions.
+    TermStore store() {
+        return store;
+    }
+
+    // Describes the precomputed short-prefix table (size and build time), if there is one.
+    public String shortPrefixReport() {
+        return shortPrefixes == null ? "Short-prefix table: none" : shortPrefixes.report();
+    }
+
+    public static void main(String[] args) throws IOException {
     	// Read in the terms from a file
         String filename = "src/dictionaries/wiktionary.txt";
-        In in = new In(filename);
-        int N = in.readInt();
-        Term[] terms = new Term[N];
-        for (int i = 0; i < N; i++) {
-            long weight = in.readLong();           // Read the next weight
-            in.readChar();                         // Scan past the tab
-            String query = in.readLine();          // Read the next query
-            terms[i] = new Term(query, weight);    // Construct the term
-        }
+        Term[] terms = DictionaryLoader.load(filename);
 
         // Read in queries from standard input and print out the top k matching terms
         StdOut.println("Read data finished");
         StdOut.println("Words in Dictionary: " + terms.length);
         // Max. number of suggestions to return
         int k = 5;
-        Autocomplete autocomplete = new Autocomplete(terms);
+        Autocomplete autocomplete = new Autocomplete(terms, true);
         while (StdIn.hasNextLine()) {
             String prefix = StdIn.readLine();
-            Term[] results = autocomplete.allMatches(prefix);
-            for (int i = 0; i < Math.min(k, results.length); i++)
+            Term[] results = autocomplete.topMatches(prefix, k);
+            for (int i = 0; i < results.length; i++)
                 StdOut.println(results[i]);
         }
     }
@@ -0,0 +1,24 @@
+package a03;
+
+/**
+ * The query contract shared by every autocomplete engine, extracted from 
+ * {@link Autocomplete}, so callers can pick an engine per dictionary depending 
+ * on whether memory or latency matters more for it.
+ * <br><br>
+ * Every method should throw a java.lang.NullPointerException if the prefix is null; 
+ * {@code topMatches} should throw a java.lang.IllegalArgumentException if k is negative.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public interface AutocompleteEngine {
+
+    // Returns all terms that start with the given prefix, in descending order of weight.
+    Term[] allMatches(String prefix);
+
+    // Returns the k heaviest terms that start with the given prefix, in descending order of weight.
+    Term[] topMatches(String prefix, int k);
+
+    // Returns the number of terms that start with the given prefix.
+    int numberOfMatches(String prefix);
+}
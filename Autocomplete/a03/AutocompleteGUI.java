@@ -20,6 +20,12 @@ import java.awt.event.FocusListener;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 import javax.swing.SwingUtilities;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -41,8 +47,6 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.event.MouseInputAdapter;
 
-import edu.princeton.cs.algs4.In;
-
 /**
  * The program takes the name of a file and an integer k as command-line arguments 
  * and provides a GUI for the user to enter queries. It presents the top k matching 
@@ -141,6 +145,24 @@ public class AutocompleteGUI extends JFrame {
     }
 
     
+    /**
+     * A snapshot of what to search for and how to display it, taken on the
+     * event dispatch thread so that the search thread never reads Swing state.
+     */
+    private static final class SuggestionRequest {
+        final String text;          // Text to complete
+        final long generation;      // Position of the request in typing order
+        final int width;            // Width of the search bar, in pixels
+        final boolean displayWeights;
+
+        SuggestionRequest(String text, long generation, int width, boolean displayWeights) {
+            this.text = text;
+            this.generation = generation;
+            this.width = width;
+            this.displayWeights = displayWeights;
+        }
+    }
+
     /**
      * The panel that interfaces with the Autocomplete object.  It consists
      * of a search bar that text can be entered into, and a drop-down list
@@ -152,7 +174,23 @@ public class AutocompleteGUI extends JFrame {
         
         private final JTextField searchText;      // Search bar
         private Autocomplete auto;                // Autocomplete object 
+        private AutocompleteSession session;      // Narrows the last search as the user types
         private String[] results = new String[k]; // Array of matches
+        
+        // Suggestions are computed on a single background thread.  The newest
+        // request waits in pending, and generation identifies the newest request
+        // so that results for text the user has since changed are dropped.
+        private final ExecutorService searcher = Executors.newSingleThreadExecutor(
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "autocomplete-search");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        private final AtomicReference<SuggestionRequest> pending = 
+                new AtomicReference<SuggestionRequest>();
+        private final AtomicLong generation = new AtomicLong();
         private JList<String> suggestions;        // List of Autocomplete matches
         private JScrollPane scrollPane;           // Scroll bar on the side of the 
         private JPanel suggestionsPanel;          // Drop down menu of suggestions
@@ -178,29 +216,7 @@ public class AutocompleteGUI extends JFrame {
             // Read in the data
             Term[] terms = null;
             try {
-                In in = new In(filename);
-                String line0 = in.readLine();
-                if (line0 == null) {
-                    System.err.println("Could not read line 0 of " + filename);
-                    System.exit(1);
-                }
-                int n = Integer.parseInt(line0);
-                terms = new Term[n];
-                for (int i = 0; i < n; i++) {
-                    String line = in.readLine();
-                    if (line == null) {
-                        System.err.println("Could not read line " + (i+1) + " of " + filename);
-                        System.exit(1);
-                    }
-                    int tab = line.indexOf('\t');
-                    if (tab == -1) {
-                        System.err.println("No tab character in line " + (i+1) + " of " + filename);
-                        System.exit(1);
-                    }
-                    long weight = Long.parseLong(line.substring(0, tab).trim());
-                    String query = line.substring(tab + 1);
-                    terms[i] = new Term(query, weight);
-                }
+                terms = DictionaryLoader.load(filename);
             }
             catch (Exception e) {
                 System.err.println("Could not read or parse input file " + filename);
@@ -209,7 +225,8 @@ public class AutocompleteGUI extends JFrame {
             }
 
             // Creates the Autocomplete Object
-            auto = new Autocomplete(terms);
+            auto = new Autocomplete(terms, true);
+            session = auto.session();
 
             GroupLayout layout = new GroupLayout(this);
             this.setLayout(layout);
@@ -448,9 +465,8 @@ public class AutocompleteGUI extends JFrame {
                         {
                             String text = searchText.getText();
                             
-                            // updates the drop-down menu
+                            // updates the drop-down menu once the search finishes
                             getSuggestions(text);                   
-                            updateListSize();
                         }
                     });
             
@@ -516,79 +532,137 @@ public class AutocompleteGUI extends JFrame {
         }
 
         /**
-         * Makes a call to the implementation of Autocomplete to get
-         * suggestions for the currently entered text.
+         * Asks for suggestions for the currently entered text.  The search and
+         * the HTML building run on a background thread; only the finished list
+         * is handed back to the event dispatch thread.  Called on the event
+         * dispatch thread.
          * 
          * @param text: string to search for
          */
         public void getSuggestions(String text) {
+            long stamp = generation.incrementAndGet();  // Makes older requests stale
             
             // Don't search for suggestions if there is no input
             if (text.equals("")) {
-                suggestions.setListData(new String[0]);
-                suggestions.clearSelection();
-                suggestions.setVisible(false);
-                scrollPane.setVisible(false);
+                showSuggestions(new String[0]);
+                return;
             }
-            else {
-                int textLen = text.length();
 
-                // Get all matching terms
-                Term[] allResults = auto.allMatches(text);
-                if (allResults == null) {
-                    throw new NullPointerException("allMatches() is null");
-                }
+            // Swing state is read here, on the event dispatch thread
+            SuggestionRequest request = new SuggestionRequest(text, stamp,
+                    searchText.getPreferredSize().width, displayWeights);
+
+            // Only one search is queued at a time; keystrokes typed while it
+            // waits just replace the text it will pick up
+            if (pending.getAndSet(request) == null) {
+                searcher.execute(
+                        new Runnable() {
+                            public void run() {
+                                SuggestionRequest next = pending.getAndSet(null);
+                                if (next != null) {
+                                    computeSuggestions(next);
+                                }
+                            }
+                        });
+            }
+        }
+
+        /**
+         * Makes a call to the implementation of Autocomplete to get
+         * suggestions for a request, and posts them to the drop-down menu
+         * unless a newer request has arrived in the meantime.  Runs on the
+         * search thread, which is the only thread that touches the session.
+         * 
+         * @param request: text to search for and the display settings to use
+         */
+        private void computeSuggestions(SuggestionRequest request) {
+            String text = request.text;
+            int textLen = text.length();
+
+            // Get the top k matching terms, narrowing the previous keystroke's range
+            session.update(text);
+            if (isStale(request)) return;
+            Term[] allResults = session.topMatches(k);
+            if (allResults == null) {
+                throw new NullPointerException("topMatches() is null");
+            }
+            if (isStale(request)) return;
 
-                results = new String[Math.min(k, allResults.length)];
-                if (Math.min(k, allResults.length) > 0) {
-                    for (int i = 0; i < results.length; i++) {
+            final String[] results = new String[Math.min(k, allResults.length)];
+            for (int i = 0; i < results.length; i++) {
 
-                        // A bit of a hack to get the Term's query 
-                    	// string and weight from toString()
-                        String next = allResults[i].toString();
-                        if (allResults[i] == null) {
-                            throw new NullPointerException("allMatches() "
-                                    + "returned an array with a null entry");
-                        }
-                        int tab = next.indexOf('\t');
-                        if (tab < 0) {
-                            throw new RuntimeException("allMatches() returned"
-                                    + " an array with an entry without a tab:"
-                                    + " '" + next + "'");
-                        }
-                        String weight = next.substring(0, tab).trim();
-                        String query  = next.substring(tab);
-
-                        // Truncate length if needed
-                        if (query.length() > suggListLen.length())
-                            query = query.substring(0, suggListLen.length());
-
-                        // Create the table HTML 
-                        results[i] = "<html><table width=\"" 
-                                + searchText.getPreferredSize().width + "\">"
-                                + "<tr><td align=left>" 
-                                + query.substring(0, textLen + 1)
-                                + "<b>" + query.substring(textLen + 1) + "</b>";
-                        if (displayWeights) {
-                            results[i] += "<td width=\"10%\" align=right>"
-                                    + "<font size=-1><span id=\"weight\" "
-                                    + "style=\"float:right;color:gray\">" 
-                                    + weight + "</font>";
-                        }
-                        results[i] += "</table></html>";
-                    }
-                    suggestions.setListData(results);
-                    suggestions.setVisible(true);
-                    scrollPane.setVisible(true);
+                // A bit of a hack to get the Term's query 
+            	// string and weight from toString()
+                if (allResults[i] == null) {
+                    throw new NullPointerException("topMatches() "
+                            + "returned an array with a null entry");
+                }
+                String next = allResults[i].toString();
+                int tab = next.indexOf('\t');
+                if (tab < 0) {
+                    throw new RuntimeException("topMatches() returned"
+                            + " an array with an entry without a tab:"
+                            + " '" + next + "'");
                 }
-                else {
-                    // No suggestions
-                    suggestions.setListData(new String[0]);
-                    suggestions.clearSelection();
-                    suggestions.setVisible(false);
-                    scrollPane.setVisible(false);
+                String weight = next.substring(0, tab).trim();
+                String query  = next.substring(tab);
+
+                // Truncate length if needed
+                if (query.length() > suggListLen.length())
+                    query = query.substring(0, suggListLen.length());
+
+                // Create the table HTML 
+                results[i] = "<html><table width=\"" 
+                        + request.width + "\">"
+                        + "<tr><td align=left>" 
+                        + query.substring(0, textLen + 1)
+                        + "<b>" + query.substring(textLen + 1) + "</b>";
+                if (request.displayWeights) {
+                    results[i] += "<td width=\"10%\" align=right>"
+                            + "<font size=-1><span id=\"weight\" "
+                            + "style=\"float:right;color:gray\">" 
+                            + weight + "</font>";
                 }
+                results[i] += "</table></html>";
+            }
+
+            final long stamp = request.generation;
+            SwingUtilities.invokeLater(
+                    new Runnable() {
+                        public void run() {
+                            // Checked again here, since typing continues while this waits
+                            if (stamp == generation.get()) {
+                                showSuggestions(results);
+                            }
+                        }
+                    });
+        }
+
+        // True if the user has typed something newer than the request
+        private boolean isStale(SuggestionRequest request) {
+            return request.generation != generation.get();
+        }
+
+        /**
+         * Replaces the contents of the drop-down menu, hiding it when there
+         * is nothing to show.  Called on the event dispatch thread.
+         * 
+         * @param results: HTML rows to display
+         */
+        private void showSuggestions(String[] results) {
+            this.results = results;
+            suggestions.setListData(results);
+            if (results.length > 0) {
+                suggestions.setVisible(true);
+                scrollPane.setVisible(true);
+            }
+            else {
+                // No suggestions
+                suggestions.clearSelection();
+                suggestions.setVisible(false);
+                scrollPane.setVisible(false);
             }
+            updateListSize();
         }
 
         // Brings the clicked suggestion up to the Search bar and search it.
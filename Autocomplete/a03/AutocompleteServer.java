@@ -0,0 +1,280 @@
+package a03;
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves prefix queries against one immutable {@link AutocompleteEngine} over a 
+ * line-based protocol on a local TCP socket. Engines are read-only after construction, 
+ * so connections share one instance with no locking, and each connection is handled 
+ * on its own virtual thread (or a pooled platform thread on JDKs before 21).
+ * <br><br>
+ * Requests are one line each, and every response ends with an empty line: <br>
+ * {@code TOP <k> <prefix>}: the top k matches, one "weight TAB query" per line, with 
+ * backslashes and line breaks in the query escaped as \\, \n and \r <br>
+ * {@code ALL <prefix>}: every match, in the same format <br>
+ * {@code COUNT <prefix>}: the number of matches <br>
+ * The prefix is everything after the single space that follows the last argument, 
+ * so it may contain spaces. Malformed requests, and requests the engine fails to 
+ * answer, get a line starting with "ERROR" and the connection stays open.
+ * <br><br>
+ * main serves a {@link ReloadableAutocomplete}, so a new version of the dictionary 
+ * file is picked up without a restart; connections move to it on their next request.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class AutocompleteServer implements Closeable {
+    private final AutocompleteEngine engine;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+
+    /**
+     * Binds the server to the given port on the loopback address.
+     * @param engine: engine to serve queries from.
+     * @param port: port to listen on (0 picks a free one).
+     */
+    public AutocompleteServer(AutocompleteEngine engine, int port) throws IOException {
+        if (engine == null) {
+        	throw new NullPointerException();
+        }
+        this.engine = engine;
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.executor = newRequestExecutor();
+    }
+
+    // Returns the port the server listens on.
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed, handing each one to its own thread.
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+        	final Socket socket;
+        	try {
+        		socket = serverSocket.accept();
+        	}
+        	catch (SocketException e) {
+        		return;		// Closed while waiting.
+        	}
+        	executor.execute(new Runnable() {
+        		public void run() {
+        			handle(socket);
+        		}
+        	});
+        }
+    }
+
+    // Answers the requests of one connection until the client closes it.
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+        		BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+        		Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+        	// Consecutive requests on a connection usually extend each other's prefix.
+        	AutocompleteSession session = null;
+        	String request;
+        	while ((request = in.readLine()) != null) {
+        		session = session(session);
+        		respond(request, out, session);
+        		out.write('\n');
+        		out.flush();
+        	}
+        }
+        catch (IOException e) {
+        	// The client went away; nothing to answer.
+        }
+    }
+
+    // Returns a session over the engine's current instance, reusing the given one if it 
+    // is still current, or null if the engine does not support sessions.
+    private AutocompleteSession session(AutocompleteSession session) {
+        Autocomplete current = null;
+        if (engine instanceof Autocomplete) {
+        	current = (Autocomplete) engine;
+        }
+        else if (engine instanceof ReloadableAutocomplete) {
+        	current = ((ReloadableAutocomplete) engine).current();
+        }
+        if (current == null) {
+        	return null;
+        }
+        if (session != null && session.autocomplete() == current) {
+        	return session;
+        }
+        return current.session();
+    }
+
+    /**
+     * Writes the response lines (without the terminating empty line) for one request, 
+     * through the connection's session when the engine supports one (it may be null).
+     */
+    void respond(String request, Writer out, AutocompleteSession session) throws IOException {
+        String[] parts = request.split(" ", 2);
+        String command = parts[0];
+        String rest = parts.length > 1 ? parts[1] : "";
+        try {
+        	if (command.equals("TOP")) {
+        		String[] args = rest.split(" ", 2);
+        		int k;
+        		try {
+        			k = Integer.parseInt(args[0]);
+        		}
+        		catch (NumberFormatException e) {
+        			k = -1;
+        		}
+        		if (k < 0) {
+        			out.write("ERROR bad argument: " + rest + "\n");
+        			return;
+        		}
+        		String prefix = args.length > 1 ? args[1] : "";
+        		if (session != null) {
+        			session.update(prefix);
+        			write(session.topMatches(k), out);
+        		}
+        		else {
+        			write(engine.topMatches(prefix, k), out);
+        		}
+        	}
+        	else if (command.equals("ALL")) {
+        		if (session != null) {
+        			session.update(rest);
+        			write(session.allMatches(), out);
+        		}
+        		else {
+        			write(engine.allMatches(rest), out);
+        		}
+        	}
+        	else if (command.equals("COUNT")) {
+        		if (session != null) {
+        			session.update(rest);
+        			out.write(session.numberOfMatches() + "\n");
+        		}
+        		else {
+        			out.write(engine.numberOfMatches(rest) + "\n");
+        		}
+        	}
+        	else {
+        		out.write("ERROR unknown command: " + command + "\n");
+        	}
+        }
+        catch (RuntimeException e) {	// The engine failed, e.g. a remote shard went away.
+        	out.write("ERROR " + oneLine(e.toString()) + "\n");
+        }
+    }
+
+    // Keeps an error message on the single line the protocol allows it.
+    private static String oneLine(String message) {
+        return message.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private static void write(Term[] terms, Writer out) throws IOException {
+        for (Term term : terms) {
+        	out.write(term.weight() + "\t" + escape(term.query()));
+        	out.write('\n');
+        }
+    }
+
+    /**
+     * Escapes a query so it fits on one response line: backslash becomes "\\", 
+     * line feed "\n" and carriage return "\r".
+     */
+    static String escape(String query) {
+        if (query.indexOf('\\') < 0 && query.indexOf('\n') < 0 && query.indexOf('\r') < 0) {
+        	return query;
+        }
+        StringBuilder escaped = new StringBuilder(query.length() + 8);
+        for (int i = 0; i < query.length(); i++) {
+        	char c = query.charAt(i);
+        	if (c == '\\') escaped.append("\\\\");
+        	else if (c == '\n') escaped.append("\\n");
+        	else if (c == '\r') escaped.append("\\r");
+        	else escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Reverses {@link #escape}.
+     * @throws IllegalArgumentException if the line ends in a lone backslash or 
+     * has an unknown escape.
+     */
+    static String unescape(String line) {
+        if (line.indexOf('\\') < 0) {
+        	return line;
+        }
+        StringBuilder query = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+        	char c = line.charAt(i);
+        	if (c != '\\') {
+        		query.append(c);
+        		continue;
+        	}
+        	if (++i == line.length()) {
+        		throw new IllegalArgumentException("Dangling escape: " + line);
+        	}
+        	switch (line.charAt(i)) {
+        	case '\\': query.append('\\'); break;
+        	case 'n': query.append('\n'); break;
+        	case 'r': query.append('\r'); break;
+        	default: throw new IllegalArgumentException("Unknown escape: " + line);
+        	}
+        }
+        return query.toString();
+    }
+
+    /**
+     * Stops accepting connections; requests already being answered finish on their threads.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdown();
+    }
+
+    /**
+     * Returns an executor that starts one virtual thread per task when the JDK has them 
+     * (21+), looked up reflectively so the code still builds and runs on older JDKs, 
+     * where it falls back to a cached pool of platform threads.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+        	Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        	return (ExecutorService) virtual.invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+        	return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Loads a dictionary and serves it. Usage: {@code AutocompleteServer dictionary.txt port}
+     */
+    public static void main(String[] args) throws IOException {
+        // Reloads the dictionary in place whenever the file changes.
+        try (ReloadableAutocomplete engine = new ReloadableAutocomplete(Paths.get(args[0]), true);
+        		AutocompleteServer server = new AutocompleteServer(engine, Integer.parseInt(args[1]))) {
+        	engine.watch();
+        	StdOut.println("Serving " + engine.numberOfMatches("") + " terms on port " + server.getPort());
+        	server.serve();
+        }
+    }
+}
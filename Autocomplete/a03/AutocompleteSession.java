@@ -0,0 +1,102 @@
+package a03;
+
+import java.util.Arrays;
+
+/**
+ * A keystroke session over an {@link Autocomplete}. When the user appends characters, 
+ * the new match range always lies inside the previous one, so the session searches 
+ * only that range: O(log M) compares rather than O(log N). It keeps the range of 
+ * every prefix length of the current text on a small stack, so a deletion pops back 
+ * to a range already known instead of searching again.
+ * <br><br>
+ * A session holds mutable state and is meant for one user (one GUI, one connection); 
+ * it must not be shared between threads. Create one with {@link Autocomplete#session()}.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class AutocompleteSession {
+    private static final long UNKNOWN = -1;
+
+    private final Autocomplete autocomplete;
+    private final TermStore store;
+    private String text = "";
+    private long[] ranges = new long[16];	// ranges[d]: packed match range of text[0..d), or UNKNOWN.
+
+    AutocompleteSession(Autocomplete autocomplete) {
+        this.autocomplete = autocomplete;
+        this.store = autocomplete.store();
+        Arrays.fill(ranges, UNKNOWN);
+        ranges[0] = TermStore.range(0, store.size());
+    }
+
+    /**
+     * Moves the session to the given text. Ranges for the part shared with the previous 
+     * text are kept; only the range of the new text is searched for, inside the range 
+     * of the longest known prefix. Characters pasted in at once are searched in one step, 
+     * and the prefixes skipped over are filled in later, only if a deletion needs them.
+     * @param text: the current contents of the search box.
+     */
+    public void update(String text) {
+        if (text == null) {
+        	throw new NullPointerException();
+        }
+        int common = 0;
+        int limit = Math.min(this.text.length(), text.length());
+        while (common < limit && this.text.charAt(common) == text.charAt(common)) {
+        	common++;
+        }
+        if (text.length() >= ranges.length) {
+        	int length = ranges.length;
+        	ranges = Arrays.copyOf(ranges, Math.max(2 * length, text.length() + 1));
+        	Arrays.fill(ranges, length, ranges.length, UNKNOWN);
+        }
+        // Forget the ranges past the shared part; they belong to the old text.
+        Arrays.fill(ranges, common + 1, Math.min(ranges.length, this.text.length() + 1), UNKNOWN);
+        this.text = text;
+        range(text.length());
+    }
+
+    // Returns the range of text[0..d), searching inside the longest known shorter prefix.
+    private long range(int d) {
+        if (ranges[d] != UNKNOWN) {
+        	return ranges[d];
+        }
+        int known = d - 1;
+        while (ranges[known] == UNKNOWN) {
+        	known--;
+        }
+        long outer = ranges[known];
+        ranges[d] = store.equalRange(text.substring(0, d), TermStore.start(outer), TermStore.end(outer));
+        return ranges[d];
+    }
+
+    // Returns the instance the session searches.
+    Autocomplete autocomplete() {
+        return autocomplete;
+    }
+
+    // Returns the current text.
+    public String text() {
+        return text;
+    }
+
+    // Returns the k heaviest terms that start with the current text, in descending order of weight.
+    public Term[] topMatches(int k) {
+        if (k < 0) {
+        	throw new IllegalArgumentException();
+        }
+        return autocomplete.topMatches(text, range(text.length()), k);
+    }
+
+    // Returns all terms that start with the current text, in descending order of weight.
+    public Term[] allMatches() {
+        return autocomplete.allMatches(range(text.length()));
+    }
+
+    // Returns the number of terms that start with the current text.
+    public int numberOfMatches() {
+        long range = range(text.length());
+        return TermStore.end(range) - TermStore.start(range);
+    }
+}
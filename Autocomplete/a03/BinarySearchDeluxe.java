@@ -14,51 +14,124 @@ public class BinarySearchDeluxe {
 	
     /**
      * Return the index of the first key in a[] that equals the search key, or -1 if no such key.
+     * Makes at most 1 + ceil(log2 N) compares.
      */
     public static <Key> int firstIndexOf(Key[] a, Key key, Comparator<Key> comparator) {
     	if (a == null || key == null || comparator == null) {
     		throw new NullPointerException("Arguments cannot be null.");
     	}
-    	int low = 0,
-    		high = a.length - 1;
-    	if (comparator.compare(a[0], key) == 0) {
-    		return 0;	// Non-recursive base case.
+    	if (a.length == 0) {
+    		return -1;
     	}
-    	while (low <= high) {
-    		int mid = low + (high - low) / 2;
-    		// For key, we are searching for the first occurrence.
-    		// Comparator: compare the key is being sorted with.
-    		if (comparator.compare(key, a[mid]) < 0) high = mid - 1;
-    		else if (comparator.compare(key, a[mid]) > 0) low = mid + 1;
-    		else if (comparator.compare(a[mid - 1], a[mid]) == 0) high = mid - 1;
-    		
-    		else return mid;
+    	int i = firstNotLess(a, 0, a.length - 1, key, comparator);
+    	if (comparator.compare(a[i], key) == 0) {
+    		return i;
     	}
 		return -1;		// Index of the first occurrence of an element matching key in a[].
     }
 
     /**
      * Return the index of the last key in a[] that equals the search key, or -1 if no such key.
+     * Makes at most 1 + ceil(log2 N) compares.
      */
     public static <Key> int lastIndexOf(Key[] a, Key key, Comparator<Key> comparator) {
     	if (a == null || key == null || comparator == null) {
     		throw new NullPointerException("Arguments cannot be null.");
     	}
+    	if (a.length == 0) {
+    		return -1;
+    	}
+    	int i = lastNotGreater(a, 0, a.length - 1, key, comparator);
+    	if (comparator.compare(a[i], key) == 0) {
+    		return i;
+    	}
+		return -1;			// Index of the last occurrence of an element matching key in a[].
+    }
+
+    /**
+     * Return the index of the first key in a[] that is not less than the search key, 
+     * or a.length if there is none. Makes at most 1 + ceil(log2 N) compares.
+     */
+    public static <Key> int lowerBound(Key[] a, Key key, Comparator<Key> comparator) {
+    	if (a == null || key == null || comparator == null) {
+    		throw new NullPointerException("Arguments cannot be null.");
+    	}
+    	if (a.length == 0) {
+    		return 0;
+    	}
+    	int i = firstNotLess(a, 0, a.length - 1, key, comparator);
+    	return comparator.compare(a[i], key) < 0 ? i + 1 : i;
+    }
+
+    /**
+     * Return the index of the first key in a[] that is greater than the search key, 
+     * or a.length if there is none. Makes at most 1 + ceil(log2 N) compares.
+     */
+    public static <Key> int upperBound(Key[] a, Key key, Comparator<Key> comparator) {
+    	if (a == null || key == null || comparator == null) {
+    		throw new NullPointerException("Arguments cannot be null.");
+    	}
+    	if (a.length == 0) {
+    		return 0;
+    	}
+    	int i = lastNotGreater(a, 0, a.length - 1, key, comparator);
+    	return comparator.compare(a[i], key) <= 0 ? i + 1 : i;
+    }
+
+    /**
+     * Return {lowerBound, upperBound} for the search key, i.e. the half-open range of keys in a[] 
+     * that equal it. Both ends share one descent until the first equal key is hit, and only then 
+     * split into the two bound searches, so this costs about one search rather than two.
+     */
+    public static <Key> int[] equalRange(Key[] a, Key key, Comparator<Key> comparator) {
+    	if (a == null || key == null || comparator == null) {
+    		throw new NullPointerException("Arguments cannot be null.");
+    	}
+    	if (a.length == 0) {
+    		return new int[] { 0, 0 };
+    	}
+    	// Invariant: keys before low are less than key, keys after high are greater.
     	int low = 0,
     		high = a.length - 1;
-    	if (comparator.compare(a[high], key) == 0) {
-    		return high;	// Non-recursive base case.
+    	while (low < high) {
+    		int mid = (low + high) >>> 1;
+    		int cmp = comparator.compare(a[mid], key);
+    		if (cmp < 0) low = mid + 1;
+    		else if (cmp > 0) high = mid;
+    		else return new int[] {
+    				firstNotLess(a, low, mid, key, comparator),
+    				lastNotGreater(a, mid, high, key, comparator) + 1 };
     	}
-    	while (low <= high) {
-    		int mid = low + (high - low) / 2;
-    		// Search for the last occurrence: key.
-    		if (comparator.compare(key, a[mid]) < 0) high = mid - 1;
-    		else if (comparator.compare(key, a[mid]) > 0) low = mid + 1;
-    		else if (comparator.compare(a[mid + 1], a[mid]) == 0) low = mid + 1;
-    		
-    		else return mid;
+    	int cmp = comparator.compare(a[low], key);
+    	if (cmp < 0) return new int[] { low + 1, low + 1 };
+    	if (cmp > 0) return new int[] { low, low };
+    	return new int[] { low, low + 1 };
+    }
+
+    /**
+     * Narrows a[low..high] to the first index whose key is not less than the search key, 
+     * or high if there is none. Makes exactly one compare per iteration.
+     */
+    private static <Key> int firstNotLess(Key[] a, int low, int high, Key key, Comparator<Key> comparator) {
+    	while (low < high) {
+    		int mid = (low + high) >>> 1;
+    		if (comparator.compare(a[mid], key) < 0) low = mid + 1;
+    		else high = mid;
     	}
-		return -1;			// Index of the last occurrence of an element matching key in a[].
+    	return low;
+    }
+
+    /**
+     * Narrows a[low..high] to the last index whose key is not greater than the search key, 
+     * or low if there is none. Makes exactly one compare per iteration.
+     */
+    private static <Key> int lastNotGreater(Key[] a, int low, int high, Key key, Comparator<Key> comparator) {
+    	while (low < high) {
+    		int mid = (low + high + 1) >>> 1;
+    		if (comparator.compare(a[mid], key) > 0) high = mid - 1;
+    		else low = mid;
+    	}
+    	return low;
     }
     
     
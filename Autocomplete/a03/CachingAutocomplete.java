@@ -0,0 +1,196 @@
+package a03;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of query results in front of any {@link AutocompleteEngine}, keyed 
+ * by (prefix, k). Typeahead traffic hammers the same short prefixes, and engines are 
+ * immutable, so cached results never need to be invalidated.
+ * <br><br>
+ * The cache is split into segments, each an access-ordered LRU map under its own lock, 
+ * so concurrent readers only contend when their keys hash to the same segment. Memory 
+ * is bounded by an estimate of each entry's footprint (key, array and Terms): when a 
+ * segment goes over its share of the bound it evicts its least recently used entries, 
+ * and a result larger than an eighth of a segment is never admitted, so one wide 
+ * allMatches cannot flush the hot entries. Callers get copies of the cached arrays.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class CachingAutocomplete implements AutocompleteEngine {
+    private static final int SEGMENTS = 16;
+    private static final int ALL = -1;	// The k used to cache allMatches results.
+
+    private final AutocompleteEngine engine;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long segmentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    private static class Key {
+        private final String prefix;
+        private final int k;
+
+        private Key(String prefix, int k) {
+            this.prefix = prefix;
+            this.k = k;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * prefix.hashCode() + k;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return k == that.k && prefix.equals(that.prefix);
+        }
+    }
+
+    private static class Entry {
+        private final Term[] terms;
+        private final long bytes;
+
+        private Entry(Term[] terms, long bytes) {
+            this.terms = terms;
+            this.bytes = bytes;
+        }
+    }
+
+    private static class Segment {
+        private final LinkedHashMap<Key, Entry> map = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+        private long bytes;
+    }
+
+    /**
+     * Creates a cache in front of the given engine.
+     * @param engine: engine to answer misses from.
+     * @param maxBytes: bound on the estimated memory held by cached results.
+     */
+    public CachingAutocomplete(AutocompleteEngine engine, long maxBytes) {
+        if (engine == null) {
+        	throw new NullPointerException();
+        }
+        if (maxBytes <= 0) {
+        	throw new IllegalArgumentException();
+        }
+        this.engine = engine;
+        this.segmentBytes = Math.max(1, maxBytes / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+        	segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public Term[] allMatches(String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        return lookup(prefix, ALL);
+    }
+
+    @Override
+    public Term[] topMatches(String prefix, int k) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        if (k < 0) {
+        	throw new IllegalArgumentException();
+        }
+        return lookup(prefix, k);
+    }
+
+    // Counting is already O(log N) or better in every engine, so it is not cached.
+    @Override
+    public int numberOfMatches(String prefix) {
+        return engine.numberOfMatches(prefix);
+    }
+
+    private Term[] lookup(String prefix, int k) {
+        Key key = new Key(prefix, k);
+        Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+        Entry entry;
+        synchronized (segment) {
+        	entry = segment.map.get(key);
+        }
+        if (entry != null) {
+        	hits.increment();
+        	return entry.terms.clone();
+        }
+        
+        // Computed outside the lock; two concurrent misses on one key both compute it.
+        misses.increment();
+        Term[] terms = k == ALL ? engine.allMatches(prefix) : engine.topMatches(prefix, k);
+        long bytes = bytes(key, terms);
+        if (bytes > segmentBytes / 8) {
+        	rejections.increment();
+        	return terms;
+        }
+        entry = new Entry(terms.clone(), bytes);
+        synchronized (segment) {
+        	Entry old = segment.map.put(key, entry);
+        	segment.bytes += bytes - (old == null ? 0 : old.bytes);
+        	Iterator<Map.Entry<Key, Entry>> eldest = segment.map.entrySet().iterator();
+        	while (segment.bytes > segmentBytes && eldest.hasNext()) {
+        		segment.bytes -= eldest.next().getValue().bytes;
+        		eldest.remove();
+        		evictions.increment();
+        	}
+        }
+        return terms;
+    }
+
+    // Estimates the heap held by one entry: map node, key, array, and each Term with its String.
+    private static long bytes(Key key, Term[] terms) {
+        long bytes = 64 + 40 + 2L * key.prefix.length() + 16 + 8L * terms.length;
+        for (Term term : terms) {
+        	bytes += 24 + 40 + 2L * term.query().length();
+        }
+        return bytes;
+    }
+
+    // Number of lookups answered from the cache.
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    // Number of lookups passed to the engine.
+    public long missCount() {
+        return misses.sum();
+    }
+
+    // Number of entries evicted to stay under the memory bound.
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    // Number of results too large to be admitted.
+    public long rejectionCount() {
+        return rejections.sum();
+    }
+
+    // Returns the estimated bytes currently held by cached results.
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+        	synchronized (segment) {
+        		bytes += segment.bytes;
+        	}
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hitCount() + " misses=" + missCount() + " evictions=" + evictionCount()
+        	+ " rejections=" + rejectionCount() + " bytes=" + estimatedBytes();
+    }
+}
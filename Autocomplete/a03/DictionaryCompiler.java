@@ -0,0 +1,95 @@
+package a03;
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Compiles a dictionary of terms into the pre-sorted binary format read by 
+ * {@link MappedAutocomplete}, so that start-up no longer has to parse the text 
+ * file, build a Term per line and sort them.
+ * <br><br>
+ * Layout (big-endian): <br>
+ * {@code int MAGIC, int VERSION, int n, int blobLength} <br>
+ * {@code double weights[n]} <br>
+ * {@code int offsets[n + 1]} (byte offset of each query in the blob, plus the end) <br>
+ * {@code byte blob[blobLength]} (the UTF-8 queries, back to back) <br>
+ * Terms are sorted by the unsigned bytes of their UTF-8 encoding, which is the 
+ * order MappedAutocomplete binary searches in.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class DictionaryCompiler {
+    static final int MAGIC = 0x41434454;	// "ACDT"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+
+    /**
+     * Writes the given terms to the given file in the binary dictionary format.
+     * @param terms: terms to compile, in any order.
+     * @param file: file to (over)write.
+     */
+    public static void compile(Term[] terms, Path file) throws IOException {
+        if (terms == null || file == null) {
+        	throw new NullPointerException();
+        }
+        final byte[][] queries = new byte[terms.length][];
+        long blobLength = 0;
+        Integer[] order = new Integer[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+        	queries[i] = terms[i].query().getBytes(StandardCharsets.UTF_8);
+        	blobLength += queries[i].length;
+        	order[i] = i;
+        }
+        if (blobLength > Integer.MAX_VALUE) {
+        	throw new IllegalArgumentException("Queries exceed 2GB of UTF-8.");
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+        	@Override
+        	public int compare(Integer i, Integer j) {
+        		return Arrays.compareUnsigned(queries[i], queries[j]);
+        	}
+        });
+
+        try (OutputStream os = Files.newOutputStream(file);
+        		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+        	out.writeInt(MAGIC);
+        	out.writeInt(VERSION);
+        	out.writeInt(terms.length);
+        	out.writeInt((int) blobLength);
+        	for (int i : order) {
+        		out.writeDouble(terms[i].weight());
+        	}
+        	int offset = 0;
+        	for (int i : order) {
+        		out.writeInt(offset);
+        		offset += queries[i].length;
+        	}
+        	out.writeInt(offset);
+        	for (int i : order) {
+        		out.write(queries[i]);
+        	}
+        }
+    }
+
+    /**
+     * Compiles a text dictionary (a count, then one "weight TAB query" per line) 
+     * into the binary format. Usage: {@code DictionaryCompiler input.txt output.bin}
+     */
+    public static void main(String[] args) throws IOException {
+        String filename = args[0];
+        Term[] terms = DictionaryLoader.load(filename);
+        compile(terms, Paths.get(args[1]));
+        StdOut.println("Compiled " + terms.length + " terms to " + args[1]);
+    }
+}
@@ -0,0 +1,189 @@
+package a03;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a dictionary file (a count N on the first line, then one "weight TAB query" 
+ * per line) in parallel. The file is split into byte ranges that start right after a 
+ * newline, and each range is read and parsed into Terms on a fork-join pool; the 
+ * chunks are then concatenated in file order.
+ * <br><br>
+ * Weights may be padded with leading spaces and may have a fractional part 
+ * ("56271872.00"), as in wiktionary.txt; they are converted as Double.parseDouble 
+ * does. Every line is parsed, so all must be well formed, but only the first N 
+ * terms are returned.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class DictionaryLoader {
+    private static final int MIN_CHUNK = 1 << 20;
+
+    // Loads the given file on the common fork-join pool.
+    public static Term[] load(String filename) throws IOException {
+        return load(Paths.get(filename), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads the given file, parsing its chunks in parallel on the given pool.
+     * @param file: dictionary file.
+     * @param pool: pool to parse on.
+     */
+    public static Term[] load(Path file, ForkJoinPool pool) throws IOException {
+        if (file == null || pool == null) {
+        	throw new NullPointerException();
+        }
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        	long size = channel.size();
+        	long headerEnd = nextLineStart(channel, 0);
+        	byte[] header = read(channel, 0, headerEnd);
+        	final int n = Integer.parseInt(new String(header, StandardCharsets.UTF_8).trim());
+        	
+        	// Nominal boundaries are moved forward to the start of the next line.
+        	int chunks = (int) Math.max(1, Math.min(4L * pool.getParallelism(), (size - headerEnd) / MIN_CHUNK));
+        	long[] starts = new long[chunks + 1];
+        	starts[0] = headerEnd;
+        	for (int i = 1; i < chunks; i++) {
+        		long nominal = headerEnd + (size - headerEnd) * i / chunks;
+        		starts[i] = Math.max(starts[i - 1], nextLineStart(channel, nominal - 1));
+        	}
+        	starts[chunks] = size;
+        	
+        	List<Callable<List<Term>>> tasks = new ArrayList<Callable<List<Term>>>(chunks);
+        	for (int i = 0; i < chunks; i++) {
+        		final long from = starts[i],
+        			to = starts[i + 1];
+        		tasks.add(new Callable<List<Term>>() {
+        			public List<Term> call() throws IOException {
+        				return parse(read(channel, from, to), from);
+        			}
+        		});
+        	}
+        	
+        	Term[] terms = new Term[n];
+        	int count = 0;
+        	for (Future<List<Term>> chunk : pool.invokeAll(tasks)) {
+        		for (Term term : chunk.get()) {
+        			if (count == n) break;
+        			terms[count++] = term;
+        		}
+        	}
+        	if (count < n) {
+        		throw new IllegalArgumentException("Expected " + n + " terms but found " + count + " in " + file);
+        	}
+        	return terms;
+        }
+        catch (InterruptedException e) {
+        	Thread.currentThread().interrupt();
+        	throw new IOException("Interrupted while loading " + file, e);
+        }
+        catch (ExecutionException e) {
+        	if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+        	if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+        	throw new IOException(e.getCause());
+        }
+    }
+
+    // Parses the lines of one chunk; position is the chunk's offset in the file, for errors.
+    private static List<Term> parse(byte[] bytes, long position) {
+        List<Term> terms = new ArrayList<Term>();
+        int lineStart = 0;
+        while (lineStart < bytes.length) {
+        	int lineEnd = lineStart;
+        	while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+        		lineEnd++;
+        	}
+        	int end = lineEnd;
+        	if (end > lineStart && bytes[end - 1] == '\r') {
+        		end--;
+        	}
+        	if (end > lineStart) {
+        		terms.add(parseLine(bytes, lineStart, end, position));
+        	}
+        	lineStart = lineEnd + 1;
+        }
+        return terms;
+    }
+
+    // Parses "weight TAB query" from bytes[from..to).
+    private static Term parseLine(byte[] bytes, int from, int to, long position) {
+        int tab = from;
+        while (tab < to && bytes[tab] != '\t') {
+        	tab++;
+        }
+        if (tab == to) {
+        	throw new IllegalArgumentException("No tab character in line at byte " + (position + from));
+        }
+        // Leading spaces pad the weight; the rest must be digits with at most one point,
+        // converted by Double.parseDouble so weights match those parsed anywhere else.
+        int start = from;
+        while (start < tab && bytes[start] == ' ') {
+        	start++;
+        }
+        boolean digits = false, point = false;
+        for (int i = start; i < tab; i++) {
+        	byte b = bytes[i];
+        	if (b >= '0' && b <= '9') {
+        		digits = true;
+        	}
+        	else if (b == '.' && !point) {
+        		point = true;
+        	}
+        	else {
+        		throw new IllegalArgumentException("Bad weight in line at byte " + (position + from));
+        	}
+        }
+        if (!digits) {
+        	throw new IllegalArgumentException("Missing weight in line at byte " + (position + from));
+        }
+        double weight = Double.parseDouble(new String(bytes, start, tab - start, StandardCharsets.US_ASCII));
+        String query = new String(bytes, tab + 1, to - tab - 1, StandardCharsets.UTF_8);
+        return new Term(query, weight);
+    }
+
+    // Returns the position just after the first newline at or after the given one (or the end).
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long size = channel.size();
+        while (position < size) {
+        	buffer.clear();
+        	int read = channel.read(buffer, position);
+        	for (int i = 0; i < read; i++) {
+        		if (buffer.get(i) == '\n') {
+        			return position + i + 1;
+        		}
+        	}
+        	position += read;
+        }
+        return size;
+    }
+
+    // Reads bytes [from, to) of the channel with positional reads, which are thread-safe.
+    private static byte[] read(FileChannel channel, long from, long to) throws IOException {
+        if (to - from > Integer.MAX_VALUE - 8) {
+        	throw new IOException("Chunk too large: " + (to - from) + " bytes");
+        }
+        byte[] bytes = new byte[(int) (to - from)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+        	int read = channel.read(buffer, from + buffer.position());
+        	if (read < 0) {
+        		return Arrays.copyOf(bytes, buffer.position());
+        	}
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,399 @@
+package a03;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * An autocomplete whose terms can be inserted, reweighted and removed while queries
+ * keep running. It is laid out like a log-structured merge tree: an immutable, sorted
+ * {@link Autocomplete} as the base, plus a small sorted delta of the changes made since
+ * the base was built. Each delta entry either overrides the base's term with the same
+ * query or, as a tombstone, hides it.
+ * <br><br>
+ * The base and the delta form one immutable snapshot held in an AtomicReference. A query
+ * reads the reference once and answers entirely from that snapshot, so it never takes a
+ * lock and never sees half an update. Writers copy the delta (it is kept small) under a
+ * lock that only writers share. Once the delta reaches mergeThreshold entries, a
+ * background thread merges it into a new base and swaps that in, carrying over any
+ * changes made while it worked.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class DynamicAutocomplete implements AutocompleteEngine {
+    private static final int DEFAULT_MERGE_THRESHOLD = 4096;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>();
+    private final Object writeLock = new Object();
+    private final Object mergeLock = new Object();
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+    private final ExecutorService merger;
+    private final boolean rangeIndex;
+    private final int mergeThreshold;
+
+    // One change to the base. term is null for a removal; inBase records whether the
+    // snapshot's base has a term with this query, which the change then shadows.
+    private static final class Entry {
+        private final String query;
+        private final Term term;
+        private final boolean inBase;
+
+        private Entry(String query, Term term, boolean inBase) {
+            this.query = query;
+            this.term = term;
+            this.inBase = inBase;
+        }
+    }
+
+    // The base and the changes made since it was built, sorted by query. Never modified.
+    private static final class Snapshot {
+        private final Autocomplete base;
+        private final Entry[] delta;
+
+        private Snapshot(Autocomplete base, Entry[] delta) {
+            this.base = base;
+            this.delta = delta;
+        }
+    }
+
+    // Initializes the data structure from the given array of terms, with the default
+    // merge threshold and no range-max index.
+    public DynamicAutocomplete(Term[] terms) {
+        this(terms, false, DEFAULT_MERGE_THRESHOLD);
+    }
+
+    // Initializes the data structure from the given array of terms (which is not modified).
+    // Where several terms share a query only the heaviest is kept. Each base is built with
+    // a range-max index if rangeIndex is set, and is rebuilt once mergeThreshold changes
+    // have accumulated.
+    public DynamicAutocomplete(Term[] terms, boolean rangeIndex, int mergeThreshold) {
+        if (terms == null) {
+        	throw new NullPointerException();
+        }
+        if (mergeThreshold < 1) {
+        	throw new IllegalArgumentException();
+        }
+        Term[] sorted = terms.clone();
+        for (Term x : sorted) {
+            if (x == null) {
+                throw new NullPointerException();
+            }
+        }
+        Arrays.parallelSort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+        	if (n > 0 && sorted[n - 1].query().equals(sorted[i].query())) {
+        		if (sorted[i].weight() > sorted[n - 1].weight()) sorted[n - 1] = sorted[i];
+        	}
+        	else sorted[n++] = sorted[i];
+        }
+        this.rangeIndex = rangeIndex;
+        this.mergeThreshold = mergeThreshold;
+        this.snapshot.set(new Snapshot(new Autocomplete(Arrays.copyOf(sorted, n), rangeIndex),
+        		new Entry[0]));
+        this.merger = Executors.newSingleThreadExecutor(
+        		new ThreadFactory() {
+        			public Thread newThread(Runnable r) {
+        				Thread t = new Thread(r, "autocomplete-merge");
+        				t.setDaemon(true);
+        				return t;
+        			}
+        		});
+    }
+
+    /**
+     * Inserts the query with the given weight, or changes its weight if it is present.
+     * @param query: the query to insert or reweight.
+     * @param weight: its new weight.
+     */
+    public void upsert(String query, double weight) {
+    	Term term = new Term(query, weight);	// Validates the arguments.
+    	synchronized (writeLock) {
+    		Snapshot s = snapshot.get();
+    		snapshot.set(new Snapshot(s.base,
+    				put(s.delta, new Entry(query, term, inBase(s.base, query)))));
+    	}
+    	mergeIfFull();
+    }
+
+    /**
+     * Removes the query.
+     * @param query: the query to remove.
+     * @return true if the query was present.
+     */
+    public boolean remove(String query) {
+    	if (query == null) {
+        	throw new NullPointerException();
+        }
+    	synchronized (writeLock) {
+    		Snapshot s = snapshot.get();
+    		int i = lowerBound(s.delta, query);
+    		boolean inDelta = i < s.delta.length && s.delta[i].query.equals(query);
+    		boolean inBase = inBase(s.base, query);
+    		boolean present = inDelta ? s.delta[i].term != null : inBase;
+    		if (!present) {
+    			return false;
+    		}
+    		Entry[] delta = inBase ? put(s.delta, new Entry(query, null, true)) : drop(s.delta, i);
+    		snapshot.set(new Snapshot(s.base, delta));
+    	}
+    	mergeIfFull();
+    	return true;
+    }
+
+    /**
+     * Merges all pending changes into a new base, in the calling thread.
+     */
+    public void compact() {
+    	merge();
+    }
+
+    // Returns the number of changes not yet merged into the base.
+    public int pendingChanges() {
+    	return snapshot.get().delta.length;
+    }
+
+    // Returns all terms that start with the given prefix, in descending order of weight.
+    @Override
+    public Term[] allMatches(String prefix) {
+    	if (prefix == null) {
+        	throw new NullPointerException();
+        }
+    	Snapshot s = snapshot.get();
+    	long range = s.base.store().equalRange(prefix);
+    	int lo = lowerBound(s.delta, prefix);
+    	int hi = prefixEnd(s.delta, lo, prefix);
+    	return combine(s.base.allMatches(range), s.delta, lo, hi, Integer.MAX_VALUE);
+    }
+
+    // Returns the k terms that start with the given prefix, in descending order of weight.
+    @Override
+    public Term[] topMatches(String prefix, int k) {
+    	if (prefix == null) {
+        	throw new NullPointerException();
+        }
+    	if (k < 0) {
+        	throw new IllegalArgumentException();
+        }
+    	Snapshot s = snapshot.get();
+    	long range = s.base.store().equalRange(prefix);
+    	int lo = lowerBound(s.delta, prefix);
+    	int hi = prefixEnd(s.delta, lo, prefix);
+    	// Every base term the delta shadows may be among the base's top k, so ask for
+    	// that many more; the base has one term per query, so this is always enough.
+    	int shadowed = 0;
+    	for (int i = lo; i < hi; i++) {
+    		if (s.delta[i].inBase) shadowed++;
+    	}
+    	int count = TermStore.end(range) - TermStore.start(range);
+    	// k + shadowed may overflow, as for allMatches-sized requests.
+    	Term[] fromBase = s.base.topMatches(prefix, range, k >= count - shadowed ? count : k + shadowed);
+    	return combine(fromBase, s.delta, lo, hi, k);
+    }
+
+    // Returns the number of terms that start with the given prefix.
+    @Override
+    public int numberOfMatches(String prefix) {
+    	if (prefix == null) {
+        	throw new NullPointerException();
+        }
+    	Snapshot s = snapshot.get();
+    	long range = s.base.store().equalRange(prefix);
+    	int count = TermStore.end(range) - TermStore.start(range);
+    	int lo = lowerBound(s.delta, prefix);
+    	int hi = prefixEnd(s.delta, lo, prefix);
+    	for (int i = lo; i < hi; i++) {
+    		if (s.delta[i].inBase) count--;
+    		if (s.delta[i].term != null) count++;
+    	}
+    	return count;
+    }
+
+    // Drops the base terms shadowed by delta[lo..hi), adds the live delta terms, and
+    // returns the heaviest k in descending order of weight.
+    private static Term[] combine(Term[] fromBase, Entry[] delta, int lo, int hi, int k) {
+    	if (lo == hi) {
+    		return fromBase.length <= k ? fromBase : Arrays.copyOf(fromBase, k);
+    	}
+    	Set<String> shadowed = new HashSet<String>();
+    	List<Term> matches = new ArrayList<Term>(fromBase.length + hi - lo);
+    	for (int i = lo; i < hi; i++) {
+    		if (delta[i].inBase) shadowed.add(delta[i].query);
+    		if (delta[i].term != null) matches.add(delta[i].term);
+    	}
+    	for (Term t : fromBase) {
+    		if (!shadowed.contains(t.query())) matches.add(t);
+    	}
+    	Term[] result = matches.toArray(new Term[0]);
+    	Arrays.sort(result, Term.byReverseWeightOrder());
+    	return result.length <= k ? result : Arrays.copyOf(result, k);
+    }
+
+    // Hands the merge to the background thread once the delta is full, unless one is
+    // already waiting.
+    private void mergeIfFull() {
+    	if (snapshot.get().delta.length >= mergeThreshold && mergeScheduled.compareAndSet(false, true)) {
+    		merger.execute(
+    				new Runnable() {
+    					public void run() {
+    						mergeScheduled.set(false);
+    						merge();
+    					}
+    				});
+    	}
+    }
+
+    // Builds a new base from a snapshot, without blocking writers, then swaps it in
+    // together with the changes written in the meantime.
+    private void merge() {
+    	synchronized (mergeLock) {
+    		Snapshot old = snapshot.get();
+    		if (old.delta.length == 0) {
+    			return;
+    		}
+    		Autocomplete base = new Autocomplete(mergedTerms(old), rangeIndex);
+    		synchronized (writeLock) {
+    			Entry[] current = snapshot.get().delta;
+    			List<Entry> carried = new ArrayList<Entry>();
+    			int i = 0;
+    			int j = 0;
+    			while (i < current.length || j < old.delta.length) {
+    				int cmp = i == current.length ? 1
+    						: j == old.delta.length ? -1
+    						: current[i].query.compareTo(old.delta[j].query);
+    				if (cmp > 0) {
+    					// Merged, then dropped from the delta by a removal; hide it again.
+    					if (old.delta[j].term != null) {
+    						carried.add(new Entry(old.delta[j].query, null, true));
+    					}
+    					j++;
+    					continue;
+    				}
+    				Entry e = current[i++];
+    				if (cmp == 0 && old.delta[j++] == e) {
+    					continue;	// Already merged into the new base.
+    				}
+    				boolean inBase = inBase(base, e.query);
+    				if (e.term != null || inBase) {
+    					carried.add(new Entry(e.query, e.term, inBase));
+    				}
+    			}
+    			snapshot.set(new Snapshot(base, carried.toArray(new Entry[0])));
+    		}
+    	}
+    }
+
+    // Returns the snapshot's live terms, sorted by query.
+    private static Term[] mergedTerms(Snapshot s) {
+    	TermStore store = s.base.store();
+    	Entry[] delta = s.delta;
+    	List<Term> merged = new ArrayList<Term>(store.size() + delta.length);
+    	int i = 0;
+    	int j = 0;
+    	while (i < store.size() || j < delta.length) {
+    		if (j == delta.length) {
+    			merged.add(store.term(i++));
+    			continue;
+    		}
+    		String q = i < store.size() ? store.query(i) : null;
+    		int cmp = q == null ? 1 : q.compareTo(delta[j].query);
+    		if (cmp < 0) {
+    			merged.add(new Term(q, store.weight(i++)));
+    		}
+    		else {
+    			if (cmp == 0) i++;	// Overridden or removed.
+    			if (delta[j].term != null) merged.add(delta[j].term);
+    			j++;
+    		}
+    	}
+    	return merged.toArray(new Term[0]);
+    }
+
+    // Does the base hold a term with exactly this query?
+    private static boolean inBase(Autocomplete base, String query) {
+    	TermStore store = base.store();
+    	long range = store.equalRange(query);
+    	int start = TermStore.start(range);
+    	return start < TermStore.end(range) && store.length(start) == query.length();
+    }
+
+    // Returns a copy of the delta with the entry inserted, or replacing the one with
+    // the same query.
+    private static Entry[] put(Entry[] delta, Entry e) {
+    	int i = lowerBound(delta, e.query);
+    	if (i < delta.length && delta[i].query.equals(e.query)) {
+    		Entry[] copy = delta.clone();
+    		copy[i] = e;
+    		return copy;
+    	}
+    	Entry[] copy = new Entry[delta.length + 1];
+    	System.arraycopy(delta, 0, copy, 0, i);
+    	copy[i] = e;
+    	System.arraycopy(delta, i, copy, i + 1, delta.length - i);
+    	return copy;
+    }
+
+    // Returns a copy of the delta without entry i.
+    private static Entry[] drop(Entry[] delta, int i) {
+    	Entry[] copy = new Entry[delta.length - 1];
+    	System.arraycopy(delta, 0, copy, 0, i);
+    	System.arraycopy(delta, i + 1, copy, i, delta.length - i - 1);
+    	return copy;
+    }
+
+    // Index of the first entry whose query is not less than key.
+    private static int lowerBound(Entry[] delta, String key) {
+    	int lo = 0;
+    	int hi = delta.length;
+    	while (lo < hi) {
+    		int mid = (lo + hi) >>> 1;
+    		if (delta[mid].query.compareTo(key) < 0) lo = mid + 1;
+    		else hi = mid;
+    	}
+    	return lo;
+    }
+
+    // End of the run of entries from lo that start with the prefix.
+    private static int prefixEnd(Entry[] delta, int lo, String prefix) {
+    	int hi = lo;
+    	while (hi < delta.length && delta[hi].query.startsWith(prefix)) hi++;
+    	return hi;
+    }
+
+    // Unit testing: reads "+weight query", "-query" or "?prefix k" commands from
+    // standard input, applying changes and printing the top matches.
+    public static void main(String[] args) throws IOException {
+    	Term[] terms = DictionaryLoader.load(args.length > 0 ? args[0] : "src/dictionaries/wiktionary.txt");
+    	DynamicAutocomplete autocomplete = new DynamicAutocomplete(terms, true, DEFAULT_MERGE_THRESHOLD);
+    	while (StdIn.hasNextLine()) {
+    		String line = StdIn.readLine();
+    		if (line.startsWith("+")) {
+    			int space = line.indexOf(' ');
+    			autocomplete.upsert(line.substring(space + 1), Double.parseDouble(line.substring(1, space)));
+    		}
+    		else if (line.startsWith("-")) {
+    			StdOut.println(autocomplete.remove(line.substring(1)));
+    		}
+    		else if (line.startsWith("?")) {
+    			int space = line.lastIndexOf(' ');
+    			String prefix = line.substring(1, space);
+    			int k = Integer.parseInt(line.substring(space + 1));
+    			for (Term t : autocomplete.topMatches(prefix, k)) {
+    				StdOut.println(t);
+    			}
+    		}
+    	}
+    }
+}
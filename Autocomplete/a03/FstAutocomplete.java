@@ -0,0 +1,582 @@
+package a03;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Autocomplete engine over a minimal acyclic finite state transducer (FST):
+ * queries that share a suffix ("... of america") share the states that spell it,
+ * not only the ones that spell a common prefix, and the weights ride along as arc
+ * outputs. The automaton is built in one pass over the sorted terms, freezing and
+ * deduplicating each state as soon as no later query can reach it.
+ * <br><br>
+ * Outputs are weight ranks: the distinct weights are kept once, in order, and a
+ * query's output is the rank of its weight, summed along its path. Whole-number
+ * weights, as in the dictionaries we ship, are packed as differences. Ranks are exact,
+ * so results carry the same weights, in the same order, as the other engines. While
+ * building, each arc's output is pushed as close to the root as possible, so after a
+ * prefix walk the cheapest completion below every state costs 0 more; the top k
+ * matches then fall out of a best-first search in rank order.
+ * <br><br>
+ * Frozen states are packed into one byte array, each written once its targets are:
+ * a header (arc count and flags), the final output and the number of completions,
+ * then the arcs. An arc is its label, its output only when it is not zero, and its
+ * target as a backward distance, all as variable-length integers, so most arcs take
+ * two or three bytes. States with many arcs use fixed-width arcs instead, so lookups
+ * can binary search them. See {@link #memoryReport()}.
+ * <br><br>
+ * An FST maps each query to one output, so duplicate queries collapse into the
+ * heaviest one.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class FstAutocomplete implements AutocompleteEngine {
+    private static final long NOT_FINAL = -1;
+    private static final int FIXED_ARCS = 8;	// States with this many arcs are fixed-width.
+
+    // Header flags, below the arc count.
+    private static final int FINAL = 1, FINAL_OUTPUT = 2, FIXED = 4, FLAG_BITS = 3;
+
+    private static final int WEIGHT_BLOCK = 16;	// Packed weights per block.
+
+    // Distinct weights, ascending, so rank r is weight number (distinctWeights - 1 - r).
+    // When every weight is a whole number they are packed: block b starts with weight
+    // blockWeight[b] at packedWeights[blockOffset[b]], followed by the differences to the
+    // next ones as variable-length integers. Otherwise they are kept in weights.
+    private final int distinctWeights;
+    private final double[] weights;
+    private final long[] blockWeight;
+    private final int[] blockOffset;
+    private final byte[] packedWeights;
+    private final int root;			// Address of the root state.
+    private byte[] bytes = new byte[1024];
+    private int length;				// Bytes written.
+    private long terms, queryChars;	// For the memory report.
+
+    // A state on the path of the last query added, still open for new arcs.
+    private static class Pending {
+        private char[] labels = new char[2];
+        private int[] targets = new int[2];
+        private long[] outputs = new long[2];
+        private int arcs;
+        private long finalOutput = NOT_FINAL;
+
+        private void addArc(char label, long output) {
+            if (arcs == labels.length) {
+            	labels = Arrays.copyOf(labels, 2 * arcs);
+            	targets = Arrays.copyOf(targets, 2 * arcs);
+            	outputs = Arrays.copyOf(outputs, 2 * arcs);
+            }
+            labels[arcs] = label;
+            outputs[arcs] = output;
+            arcs++;
+        }
+
+        // Adds the given cost to every path leaving this state.
+        private void prepend(long output) {
+            for (int i = 0; i < arcs; i++) {
+            	outputs[i] += output;
+            }
+            if (finalOutput != NOT_FINAL) {
+            	finalOutput += output;
+            }
+        }
+    }
+
+    // Identity of a frozen state for deduplication: its final output and its arcs.
+    private static class StateKey {
+        private final long[] data;
+        private final int hash;
+
+        private StateKey(long[] data) {
+            this.data = data;
+            this.hash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateKey && Arrays.equals(data, ((StateKey) o).data);
+        }
+    }
+
+    /**
+     * Builds the automaton from the given array of terms.
+     * @param terms: terms to index; the array is sorted in place.
+     */
+    public FstAutocomplete(Term[] terms) {
+        if (terms == null) {
+        	throw new NullPointerException();
+        }
+        double[] all = new double[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i] == null) {
+                throw new NullPointerException();
+            }
+            all[i] = terms[i].weight() + 0.0;	// -0.0 ranks as 0.0, as in TermStore.
+        }
+        double[] distinct = distinct(all);
+        distinctWeights = distinct.length;
+        Arrays.sort(terms);
+
+        Map<StateKey, Integer> registry = new HashMap<StateKey, Integer>();
+        List<Pending> frontier = new ArrayList<Pending>();
+        frontier.add(new Pending());
+        String previous = null;
+        for (Term t : terms) {
+        	String query = t.query();
+        	this.terms++;
+        	queryChars += query.length();
+        	add(frontier, registry, previous, query, rank(distinct, t.weight() + 0.0));
+        	previous = query;
+        }
+        freeze(frontier, registry, 0);
+        root = compile(frontier.get(0), registry);
+        bytes = Arrays.copyOf(bytes, length);
+
+        if (wholeNumbers(distinct)) {
+        	int blocks = (distinct.length + WEIGHT_BLOCK - 1) / WEIGHT_BLOCK;
+        	blockWeight = new long[blocks];
+        	blockOffset = new int[blocks];
+        	byte[] packed = new byte[16];
+        	int n = 0;
+        	for (int i = 0; i < distinct.length; i++) {
+        		if (i % WEIGHT_BLOCK == 0) {
+        			blockWeight[i / WEIGHT_BLOCK] = (long) distinct[i];
+        			blockOffset[i / WEIGHT_BLOCK] = n;
+        			continue;
+        		}
+        		if (n + 10 > packed.length) {
+        			packed = Arrays.copyOf(packed, 2 * packed.length);
+        		}
+        		for (long delta = (long) distinct[i] - (long) distinct[i - 1]; ; delta >>>= 7) {
+        			if ((delta & ~0x7FL) == 0) {
+        				packed[n++] = (byte) delta;
+        				break;
+        			}
+        			packed[n++] = (byte) ((delta & 0x7F) | 0x80);
+        		}
+        	}
+        	packedWeights = Arrays.copyOf(packed, n);
+        	weights = null;
+        }
+        else {
+        	weights = distinct;
+        	blockWeight = null;
+        	blockOffset = null;
+        	packedWeights = null;
+        }
+    }
+
+    // Whether every weight is a whole number that a long holds exactly.
+    private static boolean wholeNumbers(double[] weights) {
+        for (double w : weights) {
+        	if (w != Math.rint(w) || w >= 1L << 53) return false;	// Also false for NaN.
+        }
+        return true;
+    }
+
+    // Sorts the weights and drops repeats.
+    private static double[] distinct(double[] weights) {
+        Arrays.sort(weights);
+        int n = 0;
+        for (int i = 0; i < weights.length; i++) {
+        	if (n == 0 || Double.compare(weights[i], weights[n - 1]) != 0) {
+        		weights[n++] = weights[i];
+        	}
+        }
+        return Arrays.copyOf(weights, n);
+    }
+
+    // Rank of a weight among the distinct ones, 0 for the heaviest.
+    private static long rank(double[] distinct, double weight) {
+        return distinct.length - 1 - Arrays.binarySearch(distinct, weight);
+    }
+
+    private double weight(long rank) {
+        int i = distinctWeights - 1 - (int) rank;
+        if (weights != null) {
+        	return weights[i];
+        }
+        long w = blockWeight[i / WEIGHT_BLOCK];
+        int pos = blockOffset[i / WEIGHT_BLOCK];
+        for (int j = i % WEIGHT_BLOCK; j > 0; j--) {
+        	long delta = 0;
+        	for (int shift = 0; ; shift += 7) {
+        		byte b = packedWeights[pos++];
+        		delta |= (long) (b & 0x7F) << shift;
+        		if (b >= 0) break;
+        	}
+        	w += delta;
+        }
+        return w;
+    }
+
+    /**
+     * Adds one query, which sorts at or after the previous one. States below the
+     * prefix shared with the previous query can no longer change, so they are frozen
+     * first; then the new cost is pushed down the shared prefix, keeping on each arc
+     * only the part common to every query through it.
+     */
+    private void add(List<Pending> frontier, Map<StateKey, Integer> registry, String previous, String query, long cost) {
+        int prefix = 0;
+        if (previous != null) {
+        	int common = Math.min(previous.length(), query.length());
+        	while (prefix < common && previous.charAt(prefix) == query.charAt(prefix)) {
+        		prefix++;
+        	}
+        }
+        freeze(frontier, registry, prefix);
+
+        for (int d = 1; d <= prefix; d++) {
+        	Pending parent = frontier.get(d - 1);
+        	int last = parent.arcs - 1;
+        	long common = Math.min(parent.outputs[last], cost);
+        	frontier.get(d).prepend(parent.outputs[last] - common);
+        	parent.outputs[last] = common;
+        	cost -= common;
+        }
+
+        if (prefix == query.length()) {
+        	// Only a duplicate of the previous query ends on the shared path.
+        	Pending node = frontier.get(prefix);
+        	node.finalOutput = node.finalOutput == NOT_FINAL ? cost : Math.min(node.finalOutput, cost);
+        	return;
+        }
+        frontier.get(prefix).addArc(query.charAt(prefix), cost);
+        for (int d = prefix + 1; d < query.length(); d++) {
+        	Pending node = new Pending();
+        	frontier.add(node);
+        	node.addArc(query.charAt(d), 0);
+        }
+        Pending last = new Pending();
+        last.finalOutput = 0;
+        frontier.add(last);
+    }
+
+    // Freezes the frontier states deeper than depth into their parents' last arcs.
+    private void freeze(List<Pending> frontier, Map<StateKey, Integer> registry, int depth) {
+        for (int d = frontier.size() - 1; d > depth; d--) {
+        	Pending parent = frontier.get(d - 1);
+        	parent.targets[parent.arcs - 1] = compile(frontier.remove(d), registry);
+        }
+    }
+
+    // Returns the address of a frozen state equal to the pending one, writing it if needed.
+    private int compile(Pending node, Map<StateKey, Integer> registry) {
+        long[] data = new long[1 + 3 * node.arcs];
+        data[0] = node.finalOutput;
+        for (int i = 0; i < node.arcs; i++) {
+        	data[1 + 3 * i] = node.labels[i];
+        	data[2 + 3 * i] = node.targets[i];
+        	data[3 + 3 * i] = node.outputs[i];
+        }
+        StateKey key = new StateKey(data);
+        Integer existing = registry.get(key);
+        if (existing != null) {
+        	return existing;
+        }
+
+        int s = length;
+        boolean isFinal = node.finalOutput != NOT_FINAL;
+        boolean fixed = node.arcs >= FIXED_ARCS;
+        long count = isFinal ? 1 : 0;
+        long maxOutput = 0,
+        	maxDistance = 0;
+        Cursor cursor = new Cursor();
+        for (int i = 0; i < node.arcs; i++) {
+        	count += cursor.state(node.targets[i]).count;
+        	maxOutput = Math.max(maxOutput, node.outputs[i]);
+        	maxDistance = Math.max(maxDistance, s - node.targets[i]);
+        }
+        writeVLong(((long) node.arcs << FLAG_BITS) | (isFinal ? FINAL : 0)
+        		| (isFinal && node.finalOutput != 0 ? FINAL_OUTPUT : 0) | (fixed ? FIXED : 0));
+        if (isFinal && node.finalOutput != 0) {
+        	writeVLong(node.finalOutput);
+        }
+        writeVLong(count);
+        if (fixed) {
+        	// Distances are from the state's address, so they are known before the arcs are.
+        	int outputWidth = width(maxOutput),
+        		distanceWidth = width(maxDistance);
+        	writeByte(outputWidth);
+        	writeByte(distanceWidth);
+        	for (int i = 0; i < node.arcs; i++) {
+        		writeFixed(node.labels[i], 2);
+        		writeFixed(node.outputs[i], outputWidth);
+        		writeFixed(s - node.targets[i], distanceWidth);
+        	}
+        }
+        else {
+        	for (int i = 0; i < node.arcs; i++) {
+        		boolean output = node.outputs[i] != 0;
+        		writeVLong(((long) node.labels[i] << 1) | (output ? 1 : 0));
+        		if (output) {
+        			writeVLong(node.outputs[i]);
+        		}
+        		writeVLong(s - node.targets[i]);
+        	}
+        }
+        registry.put(key, s);
+        return s;
+    }
+
+    // Bytes needed for a non-negative value.
+    private static int width(long value) {
+        return (64 - Long.numberOfLeadingZeros(value) + 7) / 8;
+    }
+
+    private void writeByte(int b) {
+        if (length == bytes.length) {
+        	bytes = Arrays.copyOf(bytes, 2 * length);
+        }
+        bytes[length++] = (byte) b;
+    }
+
+    // Writes 7 bits per byte, low bits first, with the high bit set on all but the last.
+    private void writeVLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+        	writeByte((int) (value & 0x7F) | 0x80);
+        	value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    // Writes the low width bytes of the value, high byte first.
+    private void writeFixed(long value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+        	writeByte((int) (value >>> (8 * i)));
+        }
+    }
+
+    /**
+     * Reads one state and then its arcs, in label order. A lookup or search allocates
+     * one Cursor and moves it from state to state.
+     */
+    private final class Cursor {
+        private int pos;
+        private int state;
+        private int arcs;				// Arcs of the state.
+        private int arc;				// Arcs read so far.
+        private boolean isFinal, fixed;
+        private long finalOutput, count;
+        private int outputWidth, distanceWidth, firstArc;
+
+        // The arc last read.
+        private char label;
+        private long output;
+        private int target;
+
+        // Reads the header of state s.
+        private Cursor state(int s) {
+            state = s;
+            pos = s;
+            long header = readVLong();
+            arcs = (int) (header >>> FLAG_BITS);
+            arc = 0;
+            isFinal = (header & FINAL) != 0;
+            finalOutput = (header & FINAL_OUTPUT) != 0 ? readVLong() : 0;
+            count = readVLong();
+            fixed = (header & FIXED) != 0;
+            if (fixed) {
+            	outputWidth = bytes[pos++];
+            	distanceWidth = bytes[pos++];
+            }
+            firstArc = pos;
+            return this;
+        }
+
+        // Reads the next arc of the state, if there is one.
+        private boolean nextArc() {
+            if (arc == arcs) {
+            	return false;
+            }
+            arc++;
+            if (fixed) {
+            	label = (char) readFixed(2);
+            	output = readFixed(outputWidth);
+            	target = state - (int) readFixed(distanceWidth);
+            }
+            else {
+            	long x = readVLong();
+            	label = (char) (x >>> 1);
+            	output = (x & 1) != 0 ? readVLong() : 0;
+            	target = state - (int) readVLong();
+            }
+            return true;
+        }
+
+        // Reads the arc with the given label, returning false if the state has none.
+        private boolean findArc(char c) {
+            if (fixed) {
+            	int size = 2 + outputWidth + distanceWidth;
+            	int low = 0,
+            		high = arcs - 1;
+            	while (low <= high) {
+            		int mid = (low + high) >>> 1;
+            		pos = firstArc + mid * size;
+            		char l = (char) readFixed(2);
+            		if (l < c) low = mid + 1;
+            		else if (l > c) high = mid - 1;
+            		else {
+            			pos = firstArc + mid * size;
+            			arc = mid;
+            			return nextArc();
+            		}
+            	}
+            	return false;
+            }
+            while (nextArc()) {
+            	if (label == c) return true;
+            	if (label > c) return false;
+            }
+            return false;
+        }
+
+        private long readVLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+            	byte b = bytes[pos++];
+            	value |= (long) (b & 0x7F) << shift;
+            	if (b >= 0) return value;
+            }
+        }
+
+        private long readFixed(int width) {
+            long value = 0;
+            for (int i = 0; i < width; i++) {
+            	value = (value << 8) | (bytes[pos++] & 0xFF);
+            }
+            return value;
+        }
+    }
+
+    @Override
+    public Term[] allMatches(String prefix) {
+        return topMatches(prefix, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Term[] topMatches(String prefix, int k) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        if (k < 0) {
+        	throw new IllegalArgumentException();
+        }
+        Cursor cursor = new Cursor().state(root);
+        long cost = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+        	if (!cursor.findArc(prefix.charAt(i))) {
+        		return new Term[0];
+        	}
+        	cost += cursor.output;
+        	cursor.state(cursor.target);
+        }
+
+        // Paths are kept as (state, parent path, label) in parallel arrays, so a query
+        // is spelled only once it is complete; a complete path has state -1 and the
+        // path it completes as parent. Arc outputs are non-negative, so paths leave
+        // the queue in cost order and complete queries come out heaviest first.
+        Term[] top = new Term[(int) Math.min(k, cursor.count)];
+        if (top.length == 0) {
+        	return top;
+        }
+        int[] pathState = new int[16],
+        	pathParent = new int[16];
+        char[] pathLabel = new char[16];
+        int paths = 1;
+        pathState[0] = cursor.state;
+        pathParent[0] = -1;
+        KeyHeap queue = new KeyHeap(16);
+        queue.add(cost, 0);
+        int found = 0;
+        while (found < top.length) {
+        	long pathCost = queue.peekKey();
+        	int path = queue.poll();
+        	if (pathState[path] == -1) {
+        		top[found++] = new Term(spell(prefix, pathParent[path], pathParent, pathLabel), weight(pathCost));
+        		continue;
+        	}
+        	cursor.state(pathState[path]);
+        	int needed = paths + cursor.arcs + 1;
+        	if (needed > pathState.length) {
+        		int capacity = Math.max(needed, 2 * pathState.length);
+        		pathState = Arrays.copyOf(pathState, capacity);
+        		pathParent = Arrays.copyOf(pathParent, capacity);
+        		pathLabel = Arrays.copyOf(pathLabel, capacity);
+        	}
+        	if (cursor.isFinal) {
+        		pathState[paths] = -1;
+        		pathParent[paths] = path;
+        		queue.add(pathCost + cursor.finalOutput, paths++);
+        	}
+        	while (cursor.nextArc()) {
+        		pathState[paths] = cursor.target;
+        		pathParent[paths] = path;
+        		pathLabel[paths] = cursor.label;
+        		queue.add(pathCost + cursor.output, paths++);
+        	}
+        }
+        return top;
+    }
+
+    // Spells the query of a path: the prefix, then the labels from path 0 down to it.
+    private static String spell(String prefix, int path, int[] pathParent, char[] pathLabel) {
+        int depth = 0;
+        for (int p = path; p != 0; p = pathParent[p]) {
+        	depth++;
+        }
+        char[] query = new char[prefix.length() + depth];
+        prefix.getChars(0, prefix.length(), query, 0);
+        for (int p = path, i = query.length - 1; p != 0; p = pathParent[p], i--) {
+        	query[i] = pathLabel[p];
+        }
+        return new String(query);
+    }
+
+    @Override
+    public int numberOfMatches(String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        Cursor cursor = new Cursor().state(root);
+        for (int i = 0; i < prefix.length(); i++) {
+        	if (!cursor.findArc(prefix.charAt(i))) {
+        		return 0;
+        	}
+        	cursor.state(cursor.target);
+        }
+        return (int) cursor.count;
+    }
+
+    /**
+     * Returns an estimate of the heap used by the automaton next to the footprint
+     * of an {@link Autocomplete} over the same terms.
+     */
+    public String memoryReport() {
+        long automaton = bytes.length + 16,
+        	weightBytes = weights != null ? 8L * weights.length + 16
+        			: 8L * blockWeight.length + 4L * blockOffset.length + packedWeights.length + 3 * 16;
+        long total = automaton + weightBytes;
+        long array = TermStore.bytes(terms, queryChars);
+        StringBuilder sb = new StringBuilder();
+        sb.append("FST: ").append(terms).append(" terms, ").append(new Cursor().state(root).count)
+        	.append(" distinct queries, ").append(distinctWeights).append(" distinct weights")
+        	.append(weights != null ? "\n" : " (packed)\n");
+        sb.append("  automaton: ").append(automaton).append(" bytes\n");
+        sb.append("  weights:   ").append(weightBytes).append(" bytes\n");
+        sb.append("  total:     ").append(total).append(" bytes\n");
+        sb.append("Autocomplete: ").append(array).append(" bytes (")
+        	.append(String.format("%.1f", total == 0 ? 0.0 : (double) array / total)).append("x the FST)");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,220 @@
+package a03;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Typo-tolerant prefix completion over an {@link Autocomplete}. A term matches a typed
+ * prefix at distance e if some prefix of the term is within Levenshtein distance e of it,
+ * and matches are ranked by weight * penalty^e, so a typo costs a fixed factor.
+ * <br><br>
+ * The sorted terms form an implicit trie: the terms below a trie node are the range that
+ * shares its path, and a node's children are the runs of that range with the same next
+ * character. The search walks this trie carrying one row of the Levenshtein table (the
+ * distances from each prefix of the typed text to the node's path), which is exactly a
+ * Levenshtein automaton state, and drops a node once every entry of its row exceeds the
+ * maximum distance. It is best-first: nodes are expanded in order of an upper bound on
+ * the score of anything below them (the range's maximum weight, from the range-max index,
+ * times the penalty for the row's minimum), and matching ranges are emitted heaviest
+ * first through the same index, so it stops after k terms without visiting the rest.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class FuzzyAutocomplete {
+    private static final double DEFAULT_PENALTY = 0.1;
+
+    private final Autocomplete autocomplete;
+    private final TermStore store;
+    private final RangeMaxIndex index;
+    private final double penalty;
+
+    // A trie node to expand (row != null) or a matching range to emit from (row == null);
+    // lo and hi are inclusive, and best is the index of the range's heaviest term.
+    private static class Candidate {
+        private final int lo, hi, depth;
+        private final int[] row;
+        private final int distance;		// Distance of the range's terms, or of the closest match above the node.
+        private final int best;
+        private final double score;		// Exact for a range, an upper bound for a node.
+
+        private Candidate(int lo, int hi, int depth, int[] row, int distance, int best, double score) {
+            this.lo = lo;
+            this.hi = hi;
+            this.depth = depth;
+            this.row = row;
+            this.distance = distance;
+            this.best = best;
+            this.score = score;
+        }
+    }
+
+    // Initializes fuzzy completion over the given terms, with the default penalty.
+    public FuzzyAutocomplete(Term[] terms) {
+        this(new Autocomplete(terms, true), DEFAULT_PENALTY);
+    }
+
+    /**
+     * Initializes fuzzy completion over an existing Autocomplete, sharing its terms and,
+     * if it has one, its range-max index.
+     * @param autocomplete: the terms to complete.
+     * @param penalty: factor applied to the weight for each edit, in (0, 1].
+     */
+    public FuzzyAutocomplete(Autocomplete autocomplete, double penalty) {
+        if (autocomplete == null) {
+        	throw new NullPointerException();
+        }
+        if (!(penalty > 0 && penalty <= 1)) {
+        	throw new IllegalArgumentException();
+        }
+        this.autocomplete = autocomplete;
+        this.store = autocomplete.store();
+        RangeMaxIndex shared = autocomplete.rangeIndex();
+        this.index = shared != null ? shared : new RangeMaxIndex(store);
+        this.penalty = penalty;
+    }
+
+    // Returns the Autocomplete this searches, for exact queries.
+    public Autocomplete autocomplete() {
+        return autocomplete;
+    }
+
+    /**
+     * Returns the k best terms within the given edit distance of the prefix, in
+     * descending order of weight * penalty^distance.
+     * @param prefix: the typed text.
+     * @param k: maximum number of terms to return.
+     * @param maxDistance: maximum number of edits, usually 1 or 2.
+     */
+    public Term[] topMatches(String prefix, int k, int maxDistance) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        if (k < 0 || maxDistance < 0) {
+        	throw new IllegalArgumentException();
+        }
+        if (k == 0 || store.size() == 0) {
+        	return new Term[0];
+        }
+        List<Term> matches = new ArrayList<Term>(Math.min(k, store.size()));
+        int m = prefix.length();
+        PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(16, new Comparator<Candidate>() {
+        	@Override
+        	public int compare(Candidate c1, Candidate c2) {
+        		return Double.compare(c2.score, c1.score);
+        	}
+        });
+        Set<Integer> emitted = new HashSet<Integer>();
+
+        // The root's row holds the cost of deleting each prefix of the typed text.
+        int[] root = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+        	root[j] = j;
+        }
+        offer(queue, 0, store.size() - 1, 0, root, Integer.MAX_VALUE, maxDistance);
+
+        while (!queue.isEmpty() && matches.size() < k) {
+        	Candidate c = queue.poll();
+        	if (c.row == null) {
+        		// Emit the range's heaviest term and split the range around it. A term
+        		// in nested ranges comes out of the closest one first; skip the others.
+        		if (emitted.add(c.best)) {
+        			matches.add(store.term(c.best));
+        		}
+        		push(queue, c.lo, c.best - 1, c.distance);
+        		push(queue, c.best + 1, c.hi, c.distance);
+        	}
+        	else {
+        		expand(queue, c, prefix, maxDistance);
+        	}
+        }
+        return matches.toArray(new Term[0]);
+    }
+
+    // Offers the node's children: the runs of its range with the same next character.
+    private void expand(PriorityQueue<Candidate> queue, Candidate node, String prefix, int maxDistance) {
+        int m = prefix.length();
+        int depth = node.depth;
+        int i = node.lo;
+        while (i <= node.hi && store.length(i) == depth) {
+        	i++;	// Terms that end here sort first and have no children.
+        }
+        while (i <= node.hi) {
+        	char c = store.charAt(i, depth);
+        	int end = runEnd(i, node.hi, depth, c);
+        	int[] row = new int[m + 1];
+        	row[0] = depth + 1;
+        	for (int j = 1; j <= m; j++) {
+        		int substitute = node.row[j - 1] + (prefix.charAt(j - 1) == c ? 0 : 1);
+        		row[j] = Math.min(substitute, Math.min(node.row[j], row[j - 1]) + 1);
+        	}
+        	offer(queue, i, end, depth + 1, row, node.distance, maxDistance);
+        	i = end + 1;
+        }
+    }
+
+    // Queues the node [lo, hi] with the given row: as a matching range if its path is
+    // close enough to the whole prefix, and as a node if something below it could be
+    // closer still. matched is the distance of the closest match above it.
+    private void offer(PriorityQueue<Candidate> queue, int lo, int hi, int depth, int[] row,
+    		int matched, int maxDistance) {
+        int min = Integer.MAX_VALUE;
+        for (int d : row) {
+        	min = Math.min(min, d);
+        }
+        int last = row[row.length - 1];
+        if (last <= maxDistance && last < matched) {
+        	push(queue, lo, hi, last);
+        	matched = last;
+        }
+        if (min <= maxDistance && min < matched) {
+        	int best = index.argMax(lo, hi);
+        	queue.add(new Candidate(lo, hi, depth, row, matched, best, score(best, min)));
+        }
+    }
+
+    // Queues the range [lo, hi] of terms at the given distance, unless it is empty.
+    private void push(PriorityQueue<Candidate> queue, int lo, int hi, int distance) {
+        if (lo > hi) {
+        	return;
+        }
+        int best = index.argMax(lo, hi);
+        queue.add(new Candidate(lo, hi, 0, null, distance, best, score(best, distance)));
+    }
+
+    private double score(int i, int distance) {
+        return store.weight(i) * Math.pow(penalty, distance);
+    }
+
+    // Last index in [lo, hi] whose character at depth is c, knowing that index lo's is.
+    private int runEnd(int lo, int hi, int depth, char c) {
+        while (lo < hi) {
+        	int mid = (lo + hi + 1) >>> 1;
+        	if (store.charAt(mid, depth) == c) lo = mid;
+        	else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    // Unit testing: reads "maxDistance prefix" lines and prints the top 10 matches.
+    public static void main(String[] args) throws IOException {
+        Term[] terms = DictionaryLoader.load(args.length > 0 ? args[0] : "src/dictionaries/wiktionary.txt");
+        FuzzyAutocomplete fuzzy = new FuzzyAutocomplete(terms);
+        while (StdIn.hasNextLine()) {
+        	String line = StdIn.readLine();
+        	int space = line.indexOf(' ');
+        	int maxDistance = Integer.parseInt(line.substring(0, space));
+        	for (Term t : fuzzy.topMatches(line.substring(space + 1), 10, maxDistance)) {
+        		StdOut.println(t);
+        	}
+        }
+    }
+}
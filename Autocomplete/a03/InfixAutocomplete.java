@@ -0,0 +1,327 @@
+package a03;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Word-start matching over an {@link Autocomplete}, so that "york" finds "new york city".
+ * A term matches a prefix if any of its words starts with it, a word starting at the
+ * beginning of the query and at every letter or digit that follows some other character.
+ * <br><br>
+ * The index is a suffix array restricted to word starts: one entry (term id, offset) per
+ * word, sorted by the query text from that offset on, so the entries whose suffix starts
+ * with a prefix form one range, found with two binary searches as in BinarySearchDeluxe.
+ * The entries' weight keys (their terms') carry a range-max index, and top-k is the same
+ * best-first expansion as Autocomplete's, skipping terms that an earlier word of theirs
+ * already supplied. Each word costs 24 bytes; see {@link #memoryReport()}. The index is
+ * built on request and shares the Autocomplete's terms, so it is optional per dictionary.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class InfixAutocomplete implements AutocompleteEngine {
+    private final Autocomplete autocomplete;
+    private final TermStore store;
+    private final long[] entries;		// (term id << 32 | offset), sorted by suffix.
+    private final long[] keys;			// keys[e]: weight key of entry e's term.
+    private final RangeMaxIndex index;
+
+    // Initializes word-start matching over the given terms.
+    public InfixAutocomplete(Term[] terms) {
+        this(new Autocomplete(terms));
+    }
+
+    /**
+     * Builds the word-start index over the terms of an existing Autocomplete.
+     * @param autocomplete: the terms to index.
+     */
+    public InfixAutocomplete(Autocomplete autocomplete) {
+        if (autocomplete == null) {
+        	throw new NullPointerException();
+        }
+        this.autocomplete = autocomplete;
+        this.store = autocomplete.store();
+
+        int count = 0;
+        for (int i = 0; i < store.size(); i++) {
+        	count += words(i, null, 0);
+        }
+        long[] unsorted = new long[count];
+        int e = 0;
+        for (int i = 0; i < store.size(); i++) {
+        	e += words(i, unsorted, e);
+        }
+        this.entries = sort(unsorted);
+        this.keys = new long[count];
+        for (int j = 0; j < count; j++) {
+        	keys[j] = store.key(term(entries[j]));
+        }
+        this.index = new RangeMaxIndex(keys);
+    }
+
+    // Counts the word starts of term i and, if into is not null, writes them from at.
+    private int words(int i, long[] into, int at) {
+        int length = store.length(i);
+        int words = 0;
+        for (int j = 0; j < length; j++) {
+        	boolean start = j == 0 || (Character.isLetterOrDigit(store.charAt(i, j))
+        			&& !Character.isLetterOrDigit(store.charAt(i, j - 1)));
+        	if (start) {
+        		if (into != null) into[at + words] = entry(i, j);
+        		words++;
+        	}
+        }
+        return words;
+    }
+
+    private static long entry(int term, int offset) {
+        return ((long) term << 32) | offset;
+    }
+
+    private static int term(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int offset(long entry) {
+        return (int) entry;
+    }
+
+    // Compares the suffixes of two entries, breaking ties by term then offset.
+    private int compareEntries(long a, long b) {
+        int ta = term(a), oa = offset(a),
+        	tb = term(b), ob = offset(b);
+        int na = store.length(ta) - oa,
+        	nb = store.length(tb) - ob;
+        int common = Math.min(na, nb);
+        for (int j = 0; j < common; j++) {
+        	char c = store.charAt(ta, oa + j);
+        	char d = store.charAt(tb, ob + j);
+        	if (c != d) {
+        		return c - d;
+        	}
+        }
+        if (na != nb) return na - nb;
+        return Long.compare(a, b);
+    }
+
+    // Compares the first |prefix| chars of entry e's suffix against the prefix.
+    private int compareToPrefix(int e, String prefix) {
+        int t = term(entries[e]), o = offset(entries[e]);
+        int n = store.length(t) - o,
+        	common = Math.min(n, prefix.length());
+        for (int j = 0; j < common; j++) {
+        	char c = store.charAt(t, o + j);
+        	char p = prefix.charAt(j);
+        	if (c != p) {
+        		return c - p;
+        	}
+        }
+        return n < prefix.length() ? -1 : 0;
+    }
+
+    // Bottom-up merge sort of the entries by suffix; there is no primitive sort taking
+    // a comparator, and boxing every word would cost more than the index itself.
+    private long[] sort(long[] a) {
+        long[] b = new long[a.length];
+        for (int width = 1; width < a.length; width *= 2) {
+        	for (int lo = 0; lo < a.length; lo += 2 * width) {
+        		int mid = Math.min(lo + width, a.length),
+        			hi = Math.min(lo + 2 * width, a.length);
+        		int i = lo, j = mid, k = lo;
+        		if (mid == hi || compareEntries(a[mid - 1], a[mid]) <= 0) {
+        			System.arraycopy(a, lo, b, lo, hi - lo);	// Already in order.
+        			continue;
+        		}
+        		while (i < mid && j < hi) {
+        			b[k++] = compareEntries(a[j], a[i]) < 0 ? a[j++] : a[i++];
+        		}
+        		while (i < mid) b[k++] = a[i++];
+        		while (j < hi) b[k++] = a[j++];
+        	}
+        	long[] t = a;
+        	a = b;
+        	b = t;
+        }
+        return a;
+    }
+
+    // Half-open range [start, end) of entries whose suffix starts with the prefix, packed
+    // as in TermStore.
+    private long equalRange(String prefix) {
+        int lo = 0, hi = entries.length;
+        while (lo < hi) {
+        	int mid = (lo + hi) >>> 1;
+        	if (compareToPrefix(mid, prefix) < 0) lo = mid + 1;
+        	else hi = mid;
+        }
+        int start = lo;
+        hi = entries.length;
+        while (lo < hi) {
+        	int mid = (lo + hi) >>> 1;
+        	if (compareToPrefix(mid, prefix) <= 0) lo = mid + 1;
+        	else hi = mid;
+        }
+        return TermStore.range(start, lo);
+    }
+
+    // Returns all terms with a word that starts with the given prefix, in descending
+    // order of weight.
+    @Override
+    public Term[] allMatches(String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        int[] ids = terms(equalRange(prefix));
+        long[] matchKeys = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+        	matchKeys[i] = store.key(ids[i]);
+        }
+        // Ids are in store order, so equal weights keep it, as in Autocomplete.
+        int[] order = WeightSort.descending(matchKeys, 0, ids.length);
+        Term[] result = new Term[ids.length];
+        for (int i = 0; i < result.length; i++) {
+        	result[i] = store.term(ids[order[i]]);
+        }
+        return result;
+    }
+
+    // Returns the distinct term ids of a packed range of entries, in ascending order.
+    private int[] terms(long range) {
+        int start = TermStore.start(range);
+        int[] ids = new int[TermStore.end(range) - start];
+        for (int i = 0; i < ids.length; i++) {
+        	ids[i] = term(entries[start + i]);
+        }
+        Arrays.sort(ids);
+        int n = 0;
+        for (int i = 0; i < ids.length; i++) {
+        	if (n == 0 || ids[i] != ids[n - 1]) ids[n++] = ids[i];
+        }
+        return n == ids.length ? ids : Arrays.copyOf(ids, n);
+    }
+
+    // Returns the k heaviest terms with a word that starts with the given prefix, in
+    // descending order of weight.
+    @Override
+    public Term[] topMatches(String prefix, int k) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        if (k < 0) {
+        	throw new IllegalArgumentException();
+        }
+        long range = equalRange(prefix);
+        int start = TermStore.start(range),
+        	end = TermStore.end(range) - 1;
+        if (start > end || k == 0) {
+        	return new Term[0];
+        }
+        // As Autocomplete.topMatchesIndexed, over entries instead of terms, except that 
+        // duplicates make the number of ranges unknown, so they are kept in growable lists.
+        IntList los = new IntList(), his = new IntList(), maxes = new IntList();
+        KeyHeap ranges = new KeyHeap(16);
+        los.add(start);
+        his.add(end);
+        maxes.add(index.argMax(start, end));
+        ranges.add(-keys[maxes.get(0)], 0);
+        BitSet seen = new BitSet();
+        List<Term> matches = new ArrayList<Term>(Math.min(k, end - start + 1));
+        while (matches.size() < k && !ranges.isEmpty()) {
+        	int r = ranges.poll();
+        	int lo = los.get(r), hi = his.get(r), best = maxes.get(r);
+        	int t = term(entries[best]);
+        	if (!seen.get(t)) {
+        		seen.set(t);
+        		matches.add(store.term(t));
+        	}
+        	if (lo < best) {
+        		ranges.add(-keys[push(los, his, maxes, lo, best - 1)], los.size() - 1);
+        	}
+        	if (best < hi) {
+        		ranges.add(-keys[push(los, his, maxes, best + 1, hi)], los.size() - 1);
+        	}
+        }
+        return matches.toArray(new Term[0]);
+    }
+
+    // Appends the range [lo, hi] and returns its heaviest entry.
+    private int push(IntList los, IntList his, IntList maxes, int lo, int hi) {
+        int best = index.argMax(lo, hi);
+        los.add(lo);
+        his.add(hi);
+        maxes.add(best);
+        return best;
+    }
+
+    // A growable int array.
+    private static final class IntList {
+        private int[] a = new int[16];
+        private int size;
+
+        void add(int x) {
+        	if (size == a.length) a = Arrays.copyOf(a, 2 * size);
+        	a[size++] = x;
+        }
+
+        int get(int i) {
+        	return a[i];
+        }
+
+        int size() {
+        	return size;
+        }
+    }
+
+    // Returns the number of terms with a word that starts with the given prefix.
+    @Override
+    public int numberOfMatches(String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        return terms(equalRange(prefix)).length;
+    }
+
+    // Returns the Autocomplete this indexes, for plain prefix queries.
+    public Autocomplete autocomplete() {
+        return autocomplete;
+    }
+
+    /**
+     * Returns a summary of the index's memory use, beside that of the terms.
+     */
+    public String memoryReport() {
+        long n = entries.length;
+        long entryBytes = 8 * n,
+        	keyBytes = 8 * n,
+        	treeBytes = 8 * n;
+        long total = entryBytes + keyBytes + treeBytes;
+        StringBuilder sb = new StringBuilder();
+        sb.append("Word-start index: ").append(store.size()).append(" terms, ").append(n).append(" words\n");
+        sb.append("  entries:         ").append(entryBytes).append(" bytes\n");
+        sb.append("  weight keys:     ").append(keyBytes).append(" bytes\n");
+        sb.append("  range-max index: ").append(treeBytes).append(" bytes\n");
+        sb.append("  total:           ").append(total).append(" bytes (")
+        	.append(store.size() == 0 ? 0 : total / store.size()).append(" per term)\n");
+        sb.append("Term store:        ").append(store.bytes()).append(" bytes");
+        return sb.toString();
+    }
+
+    // Unit testing: prints the memory report, then the top 10 matches of each prefix
+    // read from standard input.
+    public static void main(String[] args) throws IOException {
+        Term[] terms = DictionaryLoader.load(args.length > 0 ? args[0] : "src/dictionaries/wiktionary.txt");
+        InfixAutocomplete infix = new InfixAutocomplete(terms);
+        StdOut.println(infix.memoryReport());
+        while (StdIn.hasNextLine()) {
+        	for (Term t : infix.topMatches(StdIn.readLine(), 10)) {
+        		StdOut.println(t);
+        	}
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package a03;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int values ordered by long keys, in two parallel primitive
+ * arrays, so ranking by weight key allocates nothing per element and compares longs
+ * rather than calling a Comparator on boxed Integers. It grows as needed.
+ * <br><br>
+ * Used as a bounded min-heap of term indices keyed by weight for top-k selection,
+ * and, with negated keys, as a max-heap for best-first expansion.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+final class KeyHeap {
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    KeyHeap(int capacity) {
+        keys = new long[Math.max(1, capacity)];
+        values = new int[keys.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Key of the smallest entry; the heap must not be empty.
+    long peekKey() {
+        return keys[0];
+    }
+
+    // Value of the smallest entry; the heap must not be empty.
+    int peekValue() {
+        return values[0];
+    }
+
+    void add(long key, int value) {
+        if (size == keys.length) {
+        	keys = Arrays.copyOf(keys, 2 * size);
+        	values = Arrays.copyOf(values, 2 * size);
+        }
+        int i = size++;
+        while (i > 0) {
+        	int parent = (i - 1) >>> 1;
+        	if (keys[parent] <= key) break;
+        	keys[i] = keys[parent];
+        	values[i] = values[parent];
+        	i = parent;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    // Removes the smallest entry and returns its value.
+    int poll() {
+        int top = values[0];
+        size--;
+        if (size > 0) {
+        	siftDown(keys[size], values[size]);
+        }
+        return top;
+    }
+
+    // Replaces the smallest entry, as poll then add but with one sift.
+    void replaceTop(long key, int value) {
+        siftDown(key, value);
+    }
+
+    // Places (key, value) at the root and sifts it down.
+    private void siftDown(long key, int value) {
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+        	int child = 2 * i + 1;
+        	if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+        	if (key <= keys[child]) break;
+        	keys[i] = keys[child];
+        	values[i] = values[child];
+        	i = child;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+}
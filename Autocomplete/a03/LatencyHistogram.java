@@ -0,0 +1,120 @@
+package a03;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of durations in nanoseconds, with log-linear buckets in the
+ * style of HdrHistogram: each power of two is split into 8 equal sub-buckets, so any
+ * recorded value is known to within 12.5% while the whole range up to 2^63 ns fits in
+ * a fixed 488 counters. Recording is a few atomic updates and never allocates.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB;	// Highest bit is at most 62.
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    // Bucket of a non-negative value: values below SUB get their own bucket, larger ones
+    // are bucketed by their highest bit and the SUB_BITS bits below it.
+    private static int index(long value) {
+        if (value < SUB) {
+        	return (int) value;
+        }
+        int high = 63 - Long.numberOfLeadingZeros(value);
+        int major = high - SUB_BITS + 1;
+        int sub = (int) (value >>> (high - SUB_BITS)) & (SUB - 1);
+        return major * SUB + sub;
+    }
+
+    // Smallest value that falls into the bucket.
+    private static long lowest(int index) {
+        if (index < SUB) {
+        	return index;
+        }
+        int major = index / SUB;
+        int sub = index % SUB;
+        return (long) (SUB + sub) << (major - 1);
+    }
+
+    /**
+     * Records one duration.
+     * @param nanos: the duration; negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+        	nanos = 0;
+        }
+        counts.incrementAndGet(index(nanos));
+        total.increment();
+        sum.add(nanos);
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) { }
+    }
+
+    // Number of durations recorded.
+    public long count() {
+        return total.sum();
+    }
+
+    // Mean duration in nanoseconds, or 0 if none were recorded.
+    public double mean() {
+        long n = count();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    // Longest duration recorded, in nanoseconds.
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the duration that the given percentage of recorded durations do not
+     * exceed, rounded down to its bucket, or 0 if none were recorded.
+     * @param percentile: between 0 and 100.
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+        	throw new IllegalArgumentException();
+        }
+        long n = count();
+        if (n == 0) {
+        	return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+        	seen += counts.get(i);
+        	if (seen >= rank) {
+        		return Math.min(lowest(i), max());
+        	}
+        }
+        return max();
+    }
+
+    // Forgets all recorded durations. Durations recorded concurrently may be lost.
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+        	counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    // Summary in microseconds: count, mean, p50, p90, p99 and max.
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+        		count(), mean() / 1e3, percentile(50) / 1e3, percentile(90) / 1e3,
+        		percentile(99) / 1e3, max() / 1e3);
+    }
+}
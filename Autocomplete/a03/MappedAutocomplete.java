@@ -0,0 +1,216 @@
+package a03;
+
+import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Autocomplete backend over a dictionary compiled by {@link DictionaryCompiler}. 
+ * The file is memory-mapped with {@code FileChannel.map} and prefix searches run 
+ * directly against the mapped bytes, so opening a dictionary costs a header check 
+ * and one sequential pass over the query offsets, with no parsing or sorting, and a 
+ * truncated or corrupt file is rejected with IllegalArgumentException before it is 
+ * queried. Several JVMs mapping the same file share one 
+ * copy in the page cache. Term objects are only created for the matches returned.
+ * <br><br>
+ * Like Autocomplete, this type is immutable and safe to query from several threads: 
+ * only absolute reads are made on the mapped buffers.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class MappedAutocomplete implements AutocompleteEngine {
+    private final int n;
+    private final DoubleBuffer weights;
+    private final IntBuffer offsets;
+    private final ByteBuffer blob;
+
+    /**
+     * Maps the given compiled dictionary.
+     * @param file: dictionary written by DictionaryCompiler.
+     */
+    public MappedAutocomplete(Path file) throws IOException {
+        if (file == null) {
+        	throw new NullPointerException();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        	long size = channel.size();
+        	if (size < DictionaryCompiler.HEADER_BYTES) {
+        		throw new IllegalArgumentException("Truncated dictionary header: " + file);
+        	}
+        	ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, DictionaryCompiler.HEADER_BYTES);
+        	if (header.getInt() != DictionaryCompiler.MAGIC || header.getInt() != DictionaryCompiler.VERSION) {
+        		throw new IOException("Not a compiled dictionary: " + file);
+        	}
+        	n = header.getInt();
+        	int blobLength = header.getInt();
+        	if (n < 0 || blobLength < 0
+        			|| size != DictionaryCompiler.HEADER_BYTES + 12L * n + 4 + blobLength) {
+        		throw new IllegalArgumentException("Corrupt or truncated dictionary (" + n + " terms, "
+        				+ blobLength + " bytes of queries, file of " + size + " bytes): " + file);
+        	}
+        	
+        	// Each section is mapped separately, so only the blob is limited to 2GB.
+        	long position = DictionaryCompiler.HEADER_BYTES;
+        	weights = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * n).asDoubleBuffer();
+        	position += 8L * n;
+        	offsets = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * (n + 1)).asIntBuffer();
+        	position += 4L * (n + 1);
+        	blob = channel.map(FileChannel.MapMode.READ_ONLY, position, blobLength);
+        }	// The mappings stay valid after the channel is closed.
+        checkOffsets(file);
+    }
+
+    // Every query must lie within the blob, in order, so no later read can fail.
+    private void checkOffsets(Path file) {
+        int previous = 0;
+        for (int i = 0; i <= n; i++) {
+        	int offset = offsets.get(i);
+        	if (offset < previous || (i == 0 && offset != 0) || (i == n && offset != blob.limit())) {
+        		throw new IllegalArgumentException("Corrupt query offset " + i + " in dictionary: " + file);
+        	}
+        	previous = offset;
+        }
+    }
+
+    // Returns all terms that start with the given prefix, in descending order of weight.
+    @Override
+    public Term[] allMatches(String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int start = firstIndexOf(key),
+        	end = endIndexOf(key, start);
+        Term[] matches = new Term[end - start];
+        for (int i = start; i < end; i++) {
+        	matches[i - start] = term(i);
+        }
+        Arrays.sort(matches, Term.byReverseWeightOrder());
+        return matches;
+    }
+
+    // Returns the k heaviest terms that start with the given prefix, in descending order of weight.
+    @Override
+    public Term[] topMatches(String prefix, int k) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        if (k < 0) {
+        	throw new IllegalArgumentException();
+        }
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int start = firstIndexOf(key),
+        	end = endIndexOf(key, start);
+        if (start == end || k == 0) {
+        	return new Term[0];
+        }
+        
+        // Bounded min-heap of indices by weight key, reading weights straight from the mapping.
+        KeyHeap heap = new KeyHeap(Math.min(k, end - start));
+        for (int i = start; i < end; i++) {
+        	long weight = TermStore.key(weights.get(i));
+        	if (heap.size() < k) {
+        		heap.add(weight, i);
+        	}
+        	else if (weight > heap.peekKey()) {
+        		heap.replaceTop(weight, i);
+        	}
+        }
+        Term[] matches = new Term[heap.size()];
+        for (int i = matches.length - 1; i >= 0; i--) {
+        	matches[i] = term(heap.poll());
+        }
+        return matches;
+    }
+
+    // Returns the number of terms that start with the given prefix.
+    @Override
+    public int numberOfMatches(String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int start = firstIndexOf(key);
+        return endIndexOf(key, start) - start;
+    }
+
+    // Returns the number of terms in the dictionary.
+    public int size() {
+        return n;
+    }
+
+    // Index of the first term whose query starts with (or sorts after) the key.
+    private int firstIndexOf(byte[] key) {
+    	int low = 0,
+    		high = n;
+    	while (low < high) {
+    		int mid = (low + high) >>> 1;
+    		if (compareToPrefix(mid, key) < 0) low = mid + 1;
+    		else high = mid;
+    	}
+    	return low;
+    }
+
+    // Index just past the last term whose query starts with the key, searching from start.
+    private int endIndexOf(byte[] key, int start) {
+    	int low = start,
+    		high = n;
+    	while (low < high) {
+    		int mid = (low + high) >>> 1;
+    		if (compareToPrefix(mid, key) <= 0) low = mid + 1;
+    		else high = mid;
+    	}
+    	return low;
+    }
+
+    // Compares the first |key| bytes of query i against the key, as unsigned bytes.
+    private int compareToPrefix(int i, byte[] key) {
+    	int from = offsets.get(i),
+    		length = offsets.get(i + 1) - from,
+    		common = Math.min(length, key.length);
+    	for (int j = 0; j < common; j++) {
+    		int cmp = (blob.get(from + j) & 0xFF) - (key[j] & 0xFF);
+    		if (cmp != 0) {
+    			return cmp;
+    		}
+    	}
+    	return length < key.length ? -1 : 0;
+    }
+
+    // Materializes term i from the mapped bytes.
+    private Term term(int i) {
+    	int from = offsets.get(i);
+    	byte[] query = new byte[offsets.get(i + 1) - from];
+    	for (int j = 0; j < query.length; j++) {
+    		query[j] = blob.get(from + j);
+    	}
+    	return new Term(new String(query, StandardCharsets.UTF_8), weights.get(i));
+    }
+
+    /**
+     * Reads prefixes from standard input and prints the top k matches from a compiled 
+     * dictionary. Usage: {@code MappedAutocomplete dictionary.bin k}
+     */
+    public static void main(String[] args) throws IOException {
+        MappedAutocomplete autocomplete = new MappedAutocomplete(Paths.get(args[0]));
+        int k = Integer.parseInt(args[1]);
+        StdOut.println("Words in Dictionary: " + autocomplete.size());
+        while (StdIn.hasNextLine()) {
+            String prefix = StdIn.readLine();
+            Term[] results = autocomplete.topMatches(prefix, k);
+            for (int i = 0; i < results.length; i++)
+                StdOut.println(results[i]);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package a03;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Optional instrumentation of the {@link Autocomplete} query path. Attach one with
+ * {@link Autocomplete#setMetrics(QueryMetrics)}; while none is attached a query pays
+ * for a single volatile read. Each recorded query contributes:
+ * <br>
+ * - the prefix compares made by its range search (the quantity bounded by the
+ *   assignment's 1 + ceil(log2 N) requirement, per end); <br>
+ * - nanoseconds spent in each phase: search (finding the match range), materialize
+ *   (creating the Terms of allMatches) and rank (the allMatches radix sort, or the top-k
+ *   selection including its Terms); <br>
+ * - its latency, in one overall histogram, one per prefix length (the last holding
+ *   every length from 16 up) and one per power of two of the match count.
+ * <br><br>
+ * Counters are LongAdders and histograms are lock-free, so one QueryMetrics can be
+ * shared by many threads and many instances. It can be read as text with
+ * {@link #getReport()} or published over JMX with {@link #register(String)}.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class QueryMetrics implements QueryMetricsMBean {
+    static final int ALL = 0, TOP = 1, COUNT = 2;	// Query kinds.
+    private static final String[] KINDS = { "allMatches", "topMatches", "numberOfMatches" };
+    private static final int PREFIX_LENGTHS = 17;	// 0 to 15, then 16 and longer.
+    private static final int MATCH_COUNTS = 33;		// 0, then [2^(i-1), 2^i) for i = 1 to 32.
+
+    private final LongAdder[] queries = new LongAdder[KINDS.length];
+    private final LongAdder searchCompares = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LongAdder materializeNanos = new LongAdder();
+    private final LongAdder rankNanos = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram[] byPrefixLength = new LatencyHistogram[PREFIX_LENGTHS];
+    private final LatencyHistogram[] byMatchCount = new LatencyHistogram[MATCH_COUNTS];
+
+    public QueryMetrics() {
+        for (int i = 0; i < queries.length; i++) {
+        	queries[i] = new LongAdder();
+        }
+        for (int i = 0; i < PREFIX_LENGTHS; i++) {
+        	byPrefixLength[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < MATCH_COUNTS; i++) {
+        	byMatchCount[i] = new LatencyHistogram();
+        }
+    }
+
+    // Records one query; the phase durations add up to its latency.
+    void record(int kind, int prefixLength, int matches, long searchCompares,
+    		long searchNanos, long materializeNanos, long rankNanos) {
+        long nanos = searchNanos + materializeNanos + rankNanos;
+        queries[kind].increment();
+        this.searchCompares.add(searchCompares);
+        this.searchNanos.add(searchNanos);
+        this.materializeNanos.add(materializeNanos);
+        this.rankNanos.add(rankNanos);
+        latency.record(nanos);
+        byPrefixLength[Math.min(prefixLength, PREFIX_LENGTHS - 1)].record(nanos);
+        byMatchCount[matchBucket(matches)].record(nanos);
+    }
+
+    // 0 for no matches, else 1 + floor(log2 matches).
+    private static int matchBucket(int matches) {
+        return matches == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(matches);
+    }
+
+    // Latency of all queries.
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    // Latency of queries with the given prefix length (16 and longer share one histogram).
+    public LatencyHistogram latencyByPrefixLength(int length) {
+        if (length < 0) {
+        	throw new IllegalArgumentException();
+        }
+        return byPrefixLength[Math.min(length, PREFIX_LENGTHS - 1)];
+    }
+
+    // Latency of queries whose match count has the same highest bit as the given one.
+    public LatencyHistogram latencyByMatchCount(int matches) {
+        if (matches < 0) {
+        	throw new IllegalArgumentException();
+        }
+        return byMatchCount[matchBucket(matches)];
+    }
+
+    @Override
+    public long getAllMatchesQueries() {
+        return queries[ALL].sum();
+    }
+
+    @Override
+    public long getTopMatchesQueries() {
+        return queries[TOP].sum();
+    }
+
+    @Override
+    public long getNumberOfMatchesQueries() {
+        return queries[COUNT].sum();
+    }
+
+    @Override
+    public long getSearchCompares() {
+        return searchCompares.sum();
+    }
+
+    @Override
+    public long getSearchNanos() {
+        return searchNanos.sum();
+    }
+
+    @Override
+    public long getMaterializeNanos() {
+        return materializeNanos.sum();
+    }
+
+    @Override
+    public long getRankNanos() {
+        return rankNanos.sum();
+    }
+
+    @Override
+    public long getLatencyP50Nanos() {
+        return latency.percentile(50);
+    }
+
+    @Override
+    public long getLatencyP99Nanos() {
+        return latency.percentile(99);
+    }
+
+    @Override
+    public long getLatencyMaxNanos() {
+        return latency.max();
+    }
+
+    @Override
+    public String getReport() {
+        long n = latency.count();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Queries:");
+        for (int i = 0; i < KINDS.length; i++) {
+        	sb.append(' ').append(KINDS[i]).append('=').append(queries[i].sum());
+        }
+        sb.append('\n');
+        sb.append("  compares per query: search ").append(perQuery(getSearchCompares(), n)).append('\n');
+        sb.append("  microseconds per query: search ").append(perQuery(getSearchNanos(), n * 1000))
+        	.append(", materialize ").append(perQuery(getMaterializeNanos(), n * 1000))
+        	.append(", rank ").append(perQuery(getRankNanos(), n * 1000)).append('\n');
+        sb.append("  latency: ").append(latency).append('\n');
+        sb.append("By prefix length:\n");
+        for (int i = 0; i < PREFIX_LENGTHS; i++) {
+        	if (byPrefixLength[i].count() > 0) {
+        		sb.append(String.format("  %3s%s %s%n", i, i == PREFIX_LENGTHS - 1 ? "+" : " ", byPrefixLength[i]));
+        	}
+        }
+        sb.append("By match count:\n");
+        for (int i = 0; i < MATCH_COUNTS; i++) {
+        	if (byMatchCount[i].count() > 0) {
+        		String bucket = i == 0 ? "0" : (1L << (i - 1)) + "-" + ((1L << i) - 1);
+        		sb.append(String.format("  %21s %s%n", bucket, byMatchCount[i]));
+        	}
+        }
+        return sb.toString();
+    }
+
+    private static String perQuery(long total, long queries) {
+        return queries == 0 ? "0" : String.format("%.2f", (double) total / queries);
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : queries) {
+        	adder.reset();
+        }
+        searchCompares.reset();
+        searchNanos.reset();
+        materializeNanos.reset();
+        rankNanos.reset();
+        latency.reset();
+        for (LatencyHistogram h : byPrefixLength) {
+        	h.reset();
+        }
+        for (LatencyHistogram h : byMatchCount) {
+        	h.reset();
+        }
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     * @param name: the object name, e.g. "a03:type=QueryMetrics,name=wiktionary".
+     * @return the name registered.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public String toString() {
+        return getReport();
+    }
+}
@@ -0,0 +1,33 @@
+package a03;
+
+/**
+ * The JMX management interface of {@link QueryMetrics}.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public interface QueryMetricsMBean {
+    // Number of allMatches, topMatches and numberOfMatches queries recorded.
+    long getAllMatchesQueries();
+    long getTopMatchesQueries();
+    long getNumberOfMatchesQueries();
+
+    // Prefix compares made by the range searches, over all queries.
+    long getSearchCompares();
+
+    // Nanoseconds spent in each phase, over all queries.
+    long getSearchNanos();
+    long getMaterializeNanos();
+    long getRankNanos();
+
+    // Latency percentiles over all queries, in nanoseconds.
+    long getLatencyP50Nanos();
+    long getLatencyP99Nanos();
+    long getLatencyMaxNanos();
+
+    // The full text report, including the histograms by prefix length and match count.
+    String getReport();
+
+    // Forgets everything recorded so far.
+    void reset();
+}
@@ -0,0 +1,255 @@
+package a03;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Autocomplete engine built on a compressed radix trie: every edge carries the 
+ * longest run of characters its subtree shares, and every node records the number 
+ * of terms and the maximum weight below it. A prefix lookup is then a walk of 
+ * |prefix| characters, with no binary search and no sort of the matches.
+ * <br><br>
+ * Optionally, each node also keeps the precomputed top {@code cachedK} terms of its 
+ * subtree, which turns {@code topMatches(prefix, k)} for k up to cachedK into a copy 
+ * of that list. Without it, top-k runs a best-first search ordered by subtree max 
+ * weight. The cached lists trade memory for latency, which is the knob that decides 
+ * between this engine and {@link Autocomplete}.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class RadixTrieAutocomplete implements AutocompleteEngine {
+    private final Node root;
+    private final int cachedK;
+
+    private static class Node {
+        private String label;		// Characters on the edge into this node.
+        private Node[] children;	// Sorted by the first character of their label.
+        private Term[] terms;		// Terms whose query ends exactly here, or null.
+        private int count;			// Number of terms in this subtree.
+        private double maxWeight;	// Maximum weight in this subtree.
+        private Term[] top;			// Optional precomputed top-k of this subtree.
+    }
+
+    // Initializes the trie from the given array of terms, without cached top-k lists.
+    public RadixTrieAutocomplete(Term[] terms) {
+        this(terms, 0);
+    }
+
+    /**
+     * Initializes the trie from the given array of terms.
+     * @param terms: terms to index; the array is sorted in place.
+     * @param cachedK: length of the top-k list precomputed at every node (0 for none).
+     */
+    public RadixTrieAutocomplete(Term[] terms, int cachedK) {
+        if (terms == null) {
+        	throw new NullPointerException();
+        }
+        for (Term x : terms) {
+            if (x == null) {
+                throw new NullPointerException();
+            }
+        }
+        if (cachedK < 0) {
+        	throw new IllegalArgumentException();
+        }
+        this.cachedK = cachedK;
+        Arrays.sort(terms);
+        root = new Node();
+        root.label = "";
+        fill(root, terms, 0, terms.length, 0);
+    }
+
+    /**
+     * Builds the node for terms[lo..hi), which all share their first {@code depth} chars. 
+     * Since the terms are sorted, the prefix shared by the whole range is the one shared 
+     * by its first and last term; the node's edge runs from edgeStart to that length.
+     */
+    private Node build(Term[] terms, int lo, int hi, int edgeStart, int depth) {
+        String first = terms[lo].query();
+        String last = terms[hi - 1].query();
+        int lcp = depth;
+        while (lcp < first.length() && lcp < last.length() && first.charAt(lcp) == last.charAt(lcp)) {
+        	lcp++;
+        }
+        Node node = new Node();
+        node.label = first.substring(edgeStart, lcp);
+        fill(node, terms, lo, hi, lcp);
+        return node;
+    }
+
+    // Fills in the terms, children and subtree summaries of a node whose prefix has length lcp.
+    private void fill(Node node, Term[] terms, int lo, int hi, int lcp) {
+        // Terms equal to the shared prefix sort first and end at this node.
+        int i = lo;
+        while (i < hi && terms[i].query().length() == lcp) {
+        	i++;
+        }
+        if (i > lo) {
+        	node.terms = Arrays.copyOfRange(terms, lo, i);
+        }
+        
+        // The rest are grouped by the character after the shared prefix.
+        List<Node> children = new ArrayList<Node>();
+        while (i < hi) {
+        	char c = terms[i].query().charAt(lcp);
+        	int j = i + 1;
+        	while (j < hi && terms[j].query().charAt(lcp) == c) {
+        		j++;
+        	}
+        	children.add(build(terms, i, j, lcp, lcp + 1));
+        	i = j;
+        }
+        node.children = children.toArray(new Node[0]);
+        
+        node.count = hi - lo;
+        node.maxWeight = 0;
+        if (node.terms != null) {
+        	for (Term t : node.terms) {
+        		node.maxWeight = Math.max(node.maxWeight, t.weight());
+        	}
+        }
+        for (Node child : node.children) {
+        	node.maxWeight = Math.max(node.maxWeight, child.maxWeight);
+        }
+        if (cachedK > 0) {
+        	// Built bottom-up, so this only merges the children's cached lists.
+        	node.top = search(node, cachedK);
+        }
+    }
+
+    @Override
+    public Term[] allMatches(String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        Node node = find(prefix);
+        if (node == null) {
+        	return new Term[0];
+        }
+        List<Term> matches = new ArrayList<Term>(node.count);
+        collect(node, matches);
+        Term[] result = matches.toArray(new Term[0]);
+        Arrays.sort(result, Term.byReverseWeightOrder());
+        return result;
+    }
+
+    @Override
+    public Term[] topMatches(String prefix, int k) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        if (k < 0) {
+        	throw new IllegalArgumentException();
+        }
+        Node node = find(prefix);
+        if (node == null || k == 0) {
+        	return new Term[0];
+        }
+        if (covers(node, k)) {
+        	return Arrays.copyOf(node.top, Math.min(k, node.top.length));
+        }
+        return search(node, k);
+    }
+
+    @Override
+    public int numberOfMatches(String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        Node node = find(prefix);
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Walks the prefix down from the root and returns the node whose subtree holds 
+     * exactly the terms starting with it, or null. The prefix may end inside an edge.
+     */
+    private Node find(String prefix) {
+        Node node = root;
+        int depth = 0;
+        while (depth < prefix.length()) {
+        	node = child(node, prefix.charAt(depth));
+        	if (node == null) {
+        		return null;
+        	}
+        	String label = node.label;
+        	int common = Math.min(label.length(), prefix.length() - depth);
+        	if (!label.regionMatches(0, prefix, depth, common)) {
+        		return null;
+        	}
+        	depth += common;
+        }
+        return node;
+    }
+
+    // Returns the child whose edge starts with c, by binary search, or null.
+    private static Node child(Node node, char c) {
+        int low = 0,
+        	high = node.children.length - 1;
+        while (low <= high) {
+        	int mid = (low + high) >>> 1;
+        	char m = node.children[mid].label.charAt(0);
+        	if (m < c) low = mid + 1;
+        	else if (m > c) high = mid - 1;
+        	else return node.children[mid];
+        }
+        return null;
+    }
+
+    // Adds every term in the subtree to the list.
+    private static void collect(Node node, List<Term> matches) {
+        if (node.terms != null) {
+        	matches.addAll(Arrays.asList(node.terms));
+        }
+        for (Node child : node.children) {
+        	collect(child, matches);
+        }
+    }
+
+    /**
+     * Best-first search for the k heaviest terms below the node. The queue holds both 
+     * nodes, keyed by their subtree max weight, and terms, keyed by their weight, so a 
+     * term is only emitted once nothing left in the queue can beat it.
+     */
+    private static Term[] search(Node node, int k) {
+        PriorityQueue<Object> queue = new PriorityQueue<Object>(new Comparator<Object>() {
+        	@Override
+        	public int compare(Object o1, Object o2) {
+        		return Double.compare(key(o2), key(o1));
+        	}
+        });
+        queue.add(node);
+        List<Term> top = new ArrayList<Term>(Math.min(k, node.count));
+        while (top.size() < k && !queue.isEmpty()) {
+        	Object next = queue.poll();
+        	if (next instanceof Term) {
+        		top.add((Term) next);
+        		continue;
+        	}
+        	Node n = (Node) next;
+        	if (n != node && covers(n, k)) {
+        		// Any of the subtree's terms in the top k is in its cached list.
+        		queue.addAll(Arrays.asList(n.top));
+        		continue;
+        	}
+        	if (n.terms != null) {
+        		queue.addAll(Arrays.asList(n.terms));
+        	}
+        	queue.addAll(Arrays.asList(n.children));
+        }
+        return top.toArray(new Term[0]);
+    }
+
+    // Whether the node's cached list holds the top k of its subtree.
+    private static boolean covers(Node node, int k) {
+        return node.top != null && (k <= node.top.length || node.top.length == node.count);
+    }
+
+    private static double key(Object o) {
+        return o instanceof Term ? ((Term) o).weight() : ((Node) o).maxWeight;
+    }
+}
@@ -0,0 +1,62 @@
+package a03;
+
+/**
+ * Range-maximum index over the weight keys of a lexicographically sorted term store 
+ * (or any other key array; see TermStore.key).
+ * It is an iterative segment tree of indices: leaf {@code n + i} holds index i, 
+ * and every internal node holds the index of the heaviest term below it, so the 
+ * heaviest term in any range can be found with O(log N) weight compares.
+ * <br><br>
+ * Ties are broken towards the lower (lexicographically smaller) index.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+class RangeMaxIndex {
+    private final long[] keys;
+    private final int[] tree;
+    private final int n;
+
+    /**
+     * Builds the index over the weights of the given store.
+     * @param store: sorted terms to index.
+     */
+    RangeMaxIndex(TermStore store) {
+        this(store.keys());
+    }
+
+    /**
+     * Builds the index over the given weight keys, which must not change afterwards.
+     * @param keys: weight keys to index.
+     */
+    RangeMaxIndex(long[] keys) {
+        this.keys = keys;
+        n = keys.length;
+        tree = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            tree[n + i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            tree[i] = heavier(tree[2 * i], tree[2 * i + 1]);
+        }
+    }
+
+    /**
+     * Returns the index of the heaviest term in terms[lo..hi] (both inclusive).
+     */
+    int argMax(int lo, int hi) {
+        int best = lo;
+        // Walk up from both leaves, folding in the nodes that lie fully inside the range.
+        for (int l = lo + n, r = hi + n + 1; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) best = heavier(best, tree[l++]);
+            if ((r & 1) == 1) best = heavier(best, tree[--r]);
+        }
+        return best;
+    }
+
+    // Returns whichever of the two indices has the larger weight (the lower one on ties).
+    private int heavier(int i, int j) {
+        if (keys[i] > keys[j] || (keys[i] == keys[j] && i < j)) return i;
+        return j;
+    }
+}
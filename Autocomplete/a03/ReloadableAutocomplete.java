@@ -0,0 +1,226 @@
+package a03;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link AutocompleteEngine} over a dictionary file that can be reloaded without
+ * stopping. A reload builds a new {@link Autocomplete} on a background thread while the
+ * old one keeps answering, then publishes it with a single reference swap; queries that
+ * already hold the old instance finish on it, and it is collected once they are done.
+ * <br><br>
+ * Builds run one at a time, and reload requests that arrive while one is waiting are
+ * merged into it, so memory never holds more than the live instance plus one build.
+ * {@link #watch()} reloads whenever the file changes, once it has been quiet for a
+ * moment so that a file being written is not read half-way.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class ReloadableAutocomplete implements AutocompleteEngine, Closeable {
+    private static final long QUIET_MILLIS = 500;	// How long the file must be unchanged.
+
+    private final Path file;
+    private final boolean rangeIndex;
+    private final AtomicReference<Autocomplete> current = new AtomicReference<Autocomplete>();
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+    private final Object buildLock = new Object();
+    private final ExecutorService builder;
+    private WatchService watcher;	// Null until watch() is called.
+
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile long lastBuildNanos;
+    private volatile long lastSwapNanos;
+    private volatile int lastSize;
+    private volatile Exception lastFailure;
+
+    /**
+     * Loads the file and builds the first instance, in the calling thread.
+     * @param file: dictionary file, in the format read by DictionaryLoader.
+     * @param rangeIndex: whether to build each instance with a range-max index.
+     */
+    public ReloadableAutocomplete(Path file, boolean rangeIndex) throws IOException {
+        if (file == null) {
+        	throw new NullPointerException();
+        }
+        this.file = file.toAbsolutePath();
+        this.rangeIndex = rangeIndex;
+        this.builder = Executors.newSingleThreadExecutor(
+        		new ThreadFactory() {
+        			public Thread newThread(Runnable r) {
+        				Thread t = new Thread(r, "autocomplete-reload");
+        				t.setDaemon(true);
+        				return t;
+        			}
+        		});
+        reloadNow();
+    }
+
+    // Returns the instance currently answering queries; it never changes once returned,
+    // so it can be used for several queries (or a session) that must agree.
+    public Autocomplete current() {
+        return current.get();
+    }
+
+    // Schedules a reload on the background thread, unless one is already waiting.
+    public void reload() {
+        if (reloadQueued.compareAndSet(false, true)) {
+        	builder.execute(
+        			new Runnable() {
+        				public void run() {
+        					reloadQueued.set(false);
+        					try {
+        						reloadNow();
+        					}
+        					catch (Exception e) {	// The old instance stays in place.
+        						failures.increment();
+        						lastFailure = e;
+        					}
+        				}
+        			});
+        }
+    }
+
+    // Reloads the file and swaps the new instance in, in the calling thread.
+    public void reloadNow() throws IOException {
+        synchronized (buildLock) {
+        	long start = System.nanoTime();
+        	Autocomplete next = build();
+        	long built = System.nanoTime();
+        	current.set(next);
+        	long swapped = System.nanoTime();
+        	lastSize = next.store().size();
+        	lastBuildNanos = built - start;
+        	lastSwapNanos = swapped - built;
+        	reloads.increment();
+        }
+    }
+
+    // Loads and indexes the file. The terms are garbage once the store has copied them.
+    private Autocomplete build() throws IOException {
+        Term[] terms = DictionaryLoader.load(file, ForkJoinPool.commonPool());
+        return new Autocomplete(terms, rangeIndex);
+    }
+
+    /**
+     * Starts a daemon thread that reloads whenever the file is created or modified.
+     * Changes are collected until the file has been quiet for QUIET_MILLIS.
+     */
+    public synchronized void watch() throws IOException {
+        if (watcher != null) {
+        	return;
+        }
+        final WatchService service = FileSystems.getDefault().newWatchService();
+        file.getParent().register(service,
+        		StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = service;
+        Thread t = new Thread(
+        		new Runnable() {
+        			public void run() {
+        				try {
+        					while (true) {
+        						if (!changed(service.take())) continue;
+        						// Wait out the rest of the write.
+        						WatchKey key;
+        						while ((key = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+        							changed(key);
+        						}
+        						reload();
+        					}
+        				}
+        				catch (InterruptedException e) {
+        					return;
+        				}
+        				catch (ClosedWatchServiceException e) {
+        					return;
+        				}
+        			}
+        		}, "autocomplete-watch");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // Consumes the key's events; true if one of them was for our file.
+    private boolean changed(WatchKey key) {
+        boolean ours = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+        	if (file.getFileName().equals(event.context())) ours = true;
+        }
+        key.reset();
+        return ours;
+    }
+
+    // Stops watching the file and the background builds.
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+        	watcher.close();
+        }
+        builder.shutdownNow();
+    }
+
+    // Returns all terms that start with the given prefix, in descending order of weight.
+    @Override
+    public Term[] allMatches(String prefix) {
+        return current.get().allMatches(prefix);
+    }
+
+    // Returns the k terms that start with the given prefix, in descending order of weight.
+    @Override
+    public Term[] topMatches(String prefix, int k) {
+        return current.get().topMatches(prefix, k);
+    }
+
+    // Returns the number of terms that start with the given prefix.
+    @Override
+    public int numberOfMatches(String prefix) {
+        return current.get().numberOfMatches(prefix);
+    }
+
+    // Number of successful loads, including the first.
+    public long reloadCount() {
+        return reloads.sum();
+    }
+
+    // Number of background reloads that failed and left the old instance in place.
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    // Returns the cause of the most recent failed reload, or null.
+    public Exception lastFailure() {
+        return lastFailure;
+    }
+
+    // Time taken to load and index the file, for the most recent successful load.
+    public long lastBuildMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastBuildNanos);
+    }
+
+    // Time taken to publish the most recent instance.
+    public long lastSwapNanos() {
+        return lastSwapNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "terms=" + lastSize + " reloads=" + reloadCount() + " failures=" + failureCount()
+        	+ " buildMillis=" + lastBuildMillis() + " swapNanos=" + lastSwapNanos();
+    }
+}
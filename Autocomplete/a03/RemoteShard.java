@@ -0,0 +1,140 @@
+package a03;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link AutocompleteEngine} answered by an {@link AutocompleteServer}, usually one
+ * shard of a {@link ShardedAutocomplete} running in another process. It keeps a single
+ * connection and sends one request at a time over it; concurrent callers take turns.
+ * <br><br>
+ * Network failures are thrown as UncheckedIOException, since the engine interface
+ * declares none, and "ERROR" responses as IllegalArgumentException. A failure in the
+ * middle of a request leaves the connection out of step with the server, so it is
+ * closed and every later request fails too. Prefixes containing a line break cannot
+ * be sent on the line protocol and are rejected with IllegalArgumentException; terms
+ * whose queries contain one come back intact, since the server escapes them.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class RemoteShard implements AutocompleteEngine, Closeable {
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+    private boolean broken;	// Set, under the lock, when a request failed halfway.
+
+    /**
+     * Connects to a server.
+     * @param host: host the server listens on.
+     * @param port: its port.
+     */
+    public RemoteShard(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    // Returns all terms that start with the given prefix, in descending order of weight.
+    @Override
+    public Term[] allMatches(String prefix) {
+        checkPrefix(prefix);
+        return terms(request("ALL " + prefix));
+    }
+
+    // Returns the k terms that start with the given prefix, in descending order of weight.
+    @Override
+    public Term[] topMatches(String prefix, int k) {
+        checkPrefix(prefix);
+        if (k < 0) {
+        	throw new IllegalArgumentException();
+        }
+        return terms(request("TOP " + k + " " + prefix));
+    }
+
+    // Returns the number of terms that start with the given prefix.
+    @Override
+    public int numberOfMatches(String prefix) {
+        checkPrefix(prefix);
+        List<String> lines = request("COUNT " + prefix);
+        return Integer.parseInt(lines.get(0));
+    }
+
+    // A prefix must fit on one request line.
+    private static void checkPrefix(String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        if (prefix.indexOf('\n') >= 0 || prefix.indexOf('\r') >= 0) {
+        	throw new IllegalArgumentException("Prefix contains a line break");
+        }
+    }
+
+    // Sends one request and returns the lines of its response.
+    private synchronized List<String> request(String request) {
+        if (broken) {
+        	throw new UncheckedIOException(new IOException("Connection to shard is broken"));
+        }
+        try {
+        	out.write(request);
+        	out.write('\n');
+        	out.flush();
+        	List<String> lines = new ArrayList<String>();
+        	String line;
+        	while (!(line = readLine()).isEmpty()) {
+        		lines.add(line);
+        	}
+        	if (!lines.isEmpty() && lines.get(0).startsWith("ERROR")) {
+        		throw new IllegalArgumentException(lines.get(0));
+        	}
+        	return lines;
+        }
+        catch (IOException e) {
+        	// Part of the request or its reply may be unread; the connection cannot be reused.
+        	broken = true;
+        	try {
+        		socket.close();
+        	}
+        	catch (IOException suppressed) {
+        		e.addSuppressed(suppressed);
+        	}
+        	throw new UncheckedIOException(e);
+        }
+    }
+
+    private String readLine() throws IOException {
+        String line = in.readLine();
+        if (line == null) {
+        	throw new EOFException("Shard closed the connection");
+        }
+        return line;
+    }
+
+    // Parses "weight TAB query" lines, with the query escaped by AutocompleteServer.
+    private static Term[] terms(List<String> lines) {
+        Term[] terms = new Term[lines.size()];
+        for (int i = 0; i < terms.length; i++) {
+        	String line = lines.get(i);
+        	int tab = line.indexOf('\t');
+        	terms[i] = new Term(AutocompleteServer.unescape(line.substring(tab + 1)), Double.parseDouble(line.substring(0, tab)));
+        }
+        return terms;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
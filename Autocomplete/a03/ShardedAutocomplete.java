@@ -0,0 +1,329 @@
+package a03;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Routes queries across shards that each hold a contiguous range of the sorted query
+ * space. Shard i holds the queries q with bounds[i] <= q < bounds[i + 1], bounds[0] is
+ * the empty string, and no query is split across two shards.
+ * <br><br>
+ * A prefix's matches are contiguous too, so the router asks only the shards whose range
+ * overlaps them: the shard holding the prefix itself, plus any later shards whose lower
+ * bound starts with the prefix. Most prefixes fall within one shard, and that shard's
+ * answer is returned as is. Otherwise the shards are asked in parallel and their partial
+ * results are merged by weight: top k of the union is the top k of the shards' top k.
+ * <br><br>
+ * Shards can be in-process {@link Autocomplete}s ({@link #inProcess(Term[], int)}) or
+ * {@link RemoteShard}s talking to an {@link AutocompleteServer} in another process.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class ShardedAutocomplete implements AutocompleteEngine, Closeable {
+    private final String[] bounds;
+    private final AutocompleteEngine[] shards;
+    private final ExecutorService scatter;
+
+    /**
+     * Initializes a router over the given shards.
+     * @param bounds: the smallest query of each shard, strictly increasing, starting with "".
+     * @param shards: the shards, in the same order.
+     */
+    public ShardedAutocomplete(String[] bounds, AutocompleteEngine[] shards) {
+        if (bounds == null || shards == null) {
+        	throw new NullPointerException();
+        }
+        if (bounds.length != shards.length || bounds.length == 0 || !bounds[0].isEmpty()) {
+        	throw new IllegalArgumentException();
+        }
+        for (int i = 0; i < shards.length; i++) {
+        	if (bounds[i] == null || shards[i] == null) {
+        		throw new NullPointerException();
+        	}
+        	if (i > 0 && bounds[i - 1].compareTo(bounds[i]) >= 0) {
+        		throw new IllegalArgumentException("Shard bounds are not increasing at " + i);
+        	}
+        }
+        this.bounds = bounds.clone();
+        this.shards = shards.clone();
+        this.scatter = Executors.newCachedThreadPool(
+        		new ThreadFactory() {
+        			public Thread newThread(Runnable r) {
+        				Thread t = new Thread(r, "autocomplete-scatter");
+        				t.setDaemon(true);
+        				return t;
+        			}
+        		});
+    }
+
+    /**
+     * Splits the terms into at most the given number of contiguous ranges of about
+     * the same size, each sorted, with no query split across two ranges.
+     * @param terms: terms to split (not modified).
+     * @param shards: number of ranges wanted.
+     */
+    public static Term[][] partition(Term[] terms, int shards) {
+        if (terms == null) {
+        	throw new NullPointerException();
+        }
+        if (shards < 1) {
+        	throw new IllegalArgumentException();
+        }
+        Term[] sorted = terms.clone();
+        Arrays.parallelSort(sorted);
+        List<Term[]> parts = new ArrayList<Term[]>(shards);
+        int from = 0;
+        for (int i = 1; i <= shards && from < sorted.length; i++) {
+        	int to = i == shards ? sorted.length : Math.max(from + 1, (int) ((long) sorted.length * i / shards));
+        	while (to < sorted.length && sorted[to].compareTo(sorted[to - 1]) == 0) {
+        		to++;	// Keep equal queries together.
+        	}
+        	parts.add(Arrays.copyOfRange(sorted, from, to));
+        	from = to;
+        }
+        if (parts.isEmpty()) {
+        	parts.add(new Term[0]);
+        }
+        return parts.toArray(new Term[0][]);
+    }
+
+    // Returns the smallest query of each part, with "" for the first, as bounds.
+    public static String[] bounds(Term[][] parts) {
+        String[] bounds = new String[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+        	bounds[i] = i == 0 ? "" : parts[i][0].query();
+        }
+        return bounds;
+    }
+
+    // Builds a router over in-process shards, each an Autocomplete with a range-max index.
+    public static ShardedAutocomplete inProcess(Term[] terms, int shards) {
+        Term[][] parts = partition(terms, shards);
+        AutocompleteEngine[] engines = new AutocompleteEngine[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+        	engines[i] = new Autocomplete(parts[i], true);
+        }
+        return new ShardedAutocomplete(bounds(parts), engines);
+    }
+
+    // Returns the number of shards.
+    public int shardCount() {
+        return shards.length;
+    }
+
+    // Returns {first, last} index of the shards that may hold matches of the prefix.
+    int[] route(String prefix) {
+        int lo = 0, hi = bounds.length;	// Last bound <= prefix; bounds[0] = "" always is.
+        while (hi - lo > 1) {
+        	int mid = (lo + hi) >>> 1;
+        	if (bounds[mid].compareTo(prefix) <= 0) lo = mid;
+        	else hi = mid;
+        }
+        int last = lo;
+        while (last + 1 < bounds.length && bounds[last + 1].startsWith(prefix)) {
+        	last++;
+        }
+        return new int[] { lo, last };
+    }
+
+    // Returns all terms that start with the given prefix, in descending order of weight.
+    @Override
+    public Term[] allMatches(final String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        int[] route = route(prefix);
+        if (route[0] == route[1]) {
+        	return shards[route[0]].allMatches(prefix);
+        }
+        return merge(gather(route, new Query<Term[]>() {
+        	public Term[] ask(AutocompleteEngine shard) {
+        		return shard.allMatches(prefix);
+        	}
+        }), Integer.MAX_VALUE);
+    }
+
+    // Returns the k terms that start with the given prefix, in descending order of weight.
+    @Override
+    public Term[] topMatches(final String prefix, final int k) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        if (k < 0) {
+        	throw new IllegalArgumentException();
+        }
+        int[] route = route(prefix);
+        if (route[0] == route[1]) {
+        	return shards[route[0]].topMatches(prefix, k);
+        }
+        return merge(gather(route, new Query<Term[]>() {
+        	public Term[] ask(AutocompleteEngine shard) {
+        		return shard.topMatches(prefix, k);
+        	}
+        }), k);
+    }
+
+    // Returns the number of terms that start with the given prefix.
+    @Override
+    public int numberOfMatches(final String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        int[] route = route(prefix);
+        if (route[0] == route[1]) {
+        	return shards[route[0]].numberOfMatches(prefix);
+        }
+        int count = 0;
+        for (Integer n : gather(route, new Query<Integer>() {
+        	public Integer ask(AutocompleteEngine shard) {
+        		return shard.numberOfMatches(prefix);
+        	}
+        })) {
+        	count += n;
+        }
+        return count;
+    }
+
+    // One request, sent to each routed shard.
+    private interface Query<T> {
+        T ask(AutocompleteEngine shard);
+    }
+
+    // Asks the shards route[0]..route[1] in parallel and returns their answers in order.
+    private <T> List<T> gather(int[] route, final Query<T> query) {
+        List<Future<T>> futures = new ArrayList<Future<T>>(route[1] - route[0] + 1);
+        for (int i = route[0]; i <= route[1]; i++) {
+        	final AutocompleteEngine shard = shards[i];
+        	futures.add(scatter.submit(new Callable<T>() {
+        		public T call() {
+        			return query.ask(shard);
+        		}
+        	}));
+        }
+        List<T> answers = new ArrayList<T>(futures.size());
+        try {
+        	for (Future<T> future : futures) {
+        		answers.add(future.get());
+        	}
+        }
+        catch (InterruptedException e) {
+        	Thread.currentThread().interrupt();
+        	throw new IllegalStateException("Interrupted while waiting for shards", e);
+        }
+        catch (ExecutionException e) {
+        	if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+        	throw new IllegalStateException(e.getCause());
+        }
+        return answers;
+    }
+
+    // Merges the shards' lists, each in descending order of weight, keeping the first k.
+    private static Term[] merge(List<Term[]> lists, int k) {
+        int total = 0;
+        for (Term[] list : lists) {
+        	total += list.length;
+        }
+        Term[] merged = new Term[total];
+        int n = 0;
+        for (Term[] list : lists) {
+        	System.arraycopy(list, 0, merged, n, list.length);
+        	n += list.length;
+        }
+        Arrays.sort(merged, Term.byReverseWeightOrder());
+        return merged.length <= k ? merged : Arrays.copyOf(merged, k);
+    }
+
+    // Closes the shards that hold connections or threads, and stops the scatter threads.
+    @Override
+    public void close() throws IOException {
+        scatter.shutdownNow();
+        for (AutocompleteEngine shard : shards) {
+        	if (shard instanceof Closeable) ((Closeable) shard).close();
+        }
+    }
+
+    // Writes terms in the format read by DictionaryLoader.
+    static void write(Term[] terms, Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+        	out.write(Integer.toString(terms.length));
+        	out.write('\n');
+        	for (Term term : terms) {
+        		out.write(BigDecimal.valueOf(term.weight()).toPlainString());
+        		out.write('\t');
+        		out.write(term.query());
+        		out.write('\n');
+        	}
+        }
+    }
+
+    /**
+     * Splits a dictionary into shards, serves each from its own AutocompleteServer
+     * process on consecutive ports, and answers prefixes read from standard input
+     * through RemoteShards.
+     * Usage: ShardedAutocomplete dictionary shards firstPort
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Term[][] parts = partition(DictionaryLoader.load(args[0]), Integer.parseInt(args[1]));
+        int firstPort = Integer.parseInt(args[2]);
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Path directory = Files.createTempDirectory("shards");
+        List<Process> processes = new ArrayList<Process>();
+        AutocompleteEngine[] shards = new AutocompleteEngine[parts.length];
+        try {
+        	for (int i = 0; i < parts.length; i++) {
+        		Path file = directory.resolve("shard" + i + ".txt");
+        		write(parts[i], file);
+        		processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+        				AutocompleteServer.class.getName(), file.toString(), Integer.toString(firstPort + i))
+        				.inheritIO().start());
+        	}
+        	for (int i = 0; i < parts.length; i++) {
+        		shards[i] = connect(firstPort + i, processes.get(i));
+        	}
+        	try (ShardedAutocomplete router = new ShardedAutocomplete(bounds(parts), shards)) {
+        		while (StdIn.hasNextLine()) {
+        			for (Term t : router.topMatches(StdIn.readLine(), 10)) {
+        				StdOut.println(t);
+        			}
+        		}
+        	}
+        }
+        finally {
+        	for (Process process : processes) {
+        		process.destroy();
+        	}
+        }
+    }
+
+    // Connects to a shard server that is still starting, for up to a minute.
+    private static RemoteShard connect(int port, Process process) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+        	try {
+        		return new RemoteShard("127.0.0.1", port);
+        	}
+        	catch (IOException e) {
+        		if (!process.isAlive() || attempt == 600) throw e;
+        		Thread.sleep(100);
+        	}
+        }
+    }
+}
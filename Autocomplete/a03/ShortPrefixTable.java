@@ -0,0 +1,123 @@
+package a03;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Precomputed top-k term indices for every prefix of length 0 to L that occurs in a 
+ * sorted {@link TermStore}. Short prefixes have the widest match ranges, so they are 
+ * the expensive queries; with this table they become one hash lookup.
+ * <br><br>
+ * The table is built in a single pass over the sorted terms. Terms sharing a prefix 
+ * of length d are contiguous, and the run for that prefix ends exactly where the 
+ * common prefix of two neighbours drops below d, so each depth keeps one bounded 
+ * min-heap for its current run and flushes it into the table when the run ends.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+class ShortPrefixTable {
+    private final Map<String, int[]> table = new HashMap<String, int[]>();
+    private final int depth;
+    private final int k;
+    private final long buildNanos;
+    private long bytes;
+
+    /**
+     * Builds the table for all prefixes up to the given length.
+     * @param store: sorted terms.
+     * @param depth: longest prefix length L to precompute.
+     * @param k: number of indices kept per prefix.
+     */
+    ShortPrefixTable(TermStore store, int depth, int k) {
+        long start = System.nanoTime();
+        this.depth = depth;
+        this.k = k;
+        int n = store.size();
+        
+        // One bounded min-heap of indices per prefix length, for the current run.
+        KeyHeap[] heaps = new KeyHeap[depth + 1];
+        for (int d = 0; d <= depth; d++) {
+        	heaps[d] = new KeyHeap(k);
+        }
+        int[] runStart = new int[depth + 1];
+        for (int i = 0; i < n; i++) {
+        	int lcp = i == 0 ? -1 : commonPrefix(store, i - 1, i, depth);
+        	for (int d = lcp + 1; d <= Math.min(depth, store.length(i)); d++) {
+        		if (!heaps[d].isEmpty()) {
+        			flush(store, runStart[d], d, heaps[d]);
+        		}
+        		runStart[d] = i;
+        	}
+        	// Runs deeper than this term ended too, without a new one starting.
+        	for (int d = Math.max(lcp + 1, store.length(i) + 1); d <= depth; d++) {
+        		if (!heaps[d].isEmpty()) {
+        			flush(store, runStart[d], d, heaps[d]);
+        		}
+        	}
+        	for (int d = 0; d <= Math.min(depth, store.length(i)); d++) {
+        		offer(store, heaps[d], i);
+        	}
+        }
+        for (int d = 0; d <= depth; d++) {
+        	if (!heaps[d].isEmpty()) {
+        		flush(store, runStart[d], d, heaps[d]);
+        	}
+        }
+        buildNanos = System.nanoTime() - start;
+    }
+
+    // Length of the common prefix of queries i and j, capped at max.
+    private static int commonPrefix(TermStore store, int i, int j, int max) {
+        int limit = Math.min(max, Math.min(store.length(i), store.length(j)));
+        int d = 0;
+        while (d < limit && store.charAt(i, d) == store.charAt(j, d)) {
+        	d++;
+        }
+        return d;
+    }
+
+    // Adds index i to a bounded min-heap by weight key.
+    private void offer(TermStore store, KeyHeap heap, int i) {
+        long key = store.key(i);
+        if (heap.size() < k) {
+        	heap.add(key, i);
+        }
+        else if (key > heap.peekKey()) {
+        	heap.replaceTop(key, i);
+        }
+    }
+
+    // Stores the run's heap, heaviest first, under its prefix of length d, emptying it.
+    private void flush(TermStore store, int representative, int d, KeyHeap heap) {
+        int size = heap.size();
+        int[] top = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+        	top[i] = heap.poll();
+        }
+        String prefix = store.query(representative).substring(0, d);
+        table.put(prefix, top);
+        // Map node, key String and int[] (all with headers), plus the table slot.
+        bytes += 32 + 40 + 2L * d + 16 + 4L * size + 8;
+    }
+
+    // Whether the table can answer a top-k query for this prefix.
+    boolean covers(String prefix, int k) {
+        return prefix.length() <= depth && k <= this.k;
+    }
+
+    /**
+     * Returns the top indices for a covered prefix, heaviest first, or an empty 
+     * array if no term starts with it (every occurring prefix is in the table).
+     */
+    int[] top(String prefix) {
+        int[] top = table.get(prefix);
+        return top == null ? new int[0] : top;
+    }
+
+    // Reports the table size and its build cost, for tuning the depth.
+    String report() {
+        return "Short-prefix table: L=" + depth + ", k=" + k + ", " + table.size() + " prefixes, ~"
+        	+ bytes + " bytes, built in " + (buildNanos / 1000000) + " ms";
+    }
+}
@@ -19,6 +19,9 @@ public class Term implements Comparable<Term> {
     private String query;
     private double weight;
 
+    // One cached byPrefixOrder comparator per prefix length below 64.
+    private static final Comparator<Term>[] PREFIX_ORDERS = prefixOrders(64);
+
     /**
      * Creates a Term with the given query string and weight.
      * @param query: term to be assigned.
@@ -35,6 +38,16 @@ public class Term implements Comparable<Term> {
         this.weight = weight;
     }
 
+    // Returns the query string of this term.
+    String query() {
+        return query;
+    }
+
+    // Returns the weight of this term.
+    double weight() {
+        return weight;
+    }
+
     /**
      * Compares the two terms in descending order by weight.
      */
@@ -42,7 +55,7 @@ public class Term implements Comparable<Term> {
         Comparator<Term> comparator = new Comparator<Term>() {
             @Override
             public int compare(Term o1, Term o2) {
-                return (int) (o2.weight - o1.weight);
+                return Double.compare(o2.weight, o1.weight);
             }
         };
         return comparator;
@@ -51,25 +64,54 @@ public class Term implements Comparable<Term> {
     /**
      * Compares the two terms in lexicographic order, but 
      * using only the first r characters of each query.
+     * Comparators for short prefixes are cached, so repeated calls do not allocate.
      */
     public static Comparator<Term> byPrefixOrder(final int r) {
         if (r < 0) {
         	throw new IllegalArgumentException();
         }
+        if (r < PREFIX_ORDERS.length) {
+        	return PREFIX_ORDERS[r];
+        }
+        return prefixOrder(r);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Term>[] prefixOrders(int n) {
+        Comparator<Term>[] orders = new Comparator[n];
+        for (int r = 0; r < n; r++) {
+        	orders[r] = prefixOrder(r);
+        }
+        return orders;
+    }
+
+    private static Comparator<Term> prefixOrder(final int r) {
         return new Comparator<Term>() {
             @Override
             public int compare(Term lexiValue1, Term lexiValue2) {
-                int k = Math.min(lexiValue2.query.length(), 
-                		Math.min(lexiValue1.query.length(), r));
-                
-                String subString1 = lexiValue1.query.substring(0, k);
-                String subString2 = lexiValue2.query.substring(0, k);
-                
-                return subString1.compareTo(subString2);
+                return comparePrefix(lexiValue1.query, lexiValue2.query, r);
             }
         };
     }
 
+    /**
+     * Compares the first r characters of s1 and s2 in place, without taking substrings.
+     * The result has the same sign as s1.substring(0, min(r, |s1|)).compareTo(...) for s2.
+     */
+    static int comparePrefix(String s1, String s2, int r) {
+        int n1 = Math.min(s1.length(), r);
+        int n2 = Math.min(s2.length(), r);
+        int n = Math.min(n1, n2);
+        for (int i = 0; i < n; i++) {
+        	char c1 = s1.charAt(i);
+        	char c2 = s2.charAt(i);
+        	if (c1 != c2) {
+        		return c1 - c2;
+        	}
+        }
+        return n1 - n2;
+    }
+
     /**
      * Compares the two terms in lexicographic order by query.
      */
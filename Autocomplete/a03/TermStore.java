@@ -0,0 +1,225 @@
+package a03;
+
+/**
+ * Compact struct-of-arrays store for a lexicographically sorted set of terms. 
+ * Instead of one Term object (header, String, char[] and weight) per entry, it keeps 
+ * a primitive weight-key array, an offset array and one shared char blob holding every 
+ * query back to back, so N terms cost three arrays rather than 3N objects, and a 
+ * binary search reads neighbouring memory instead of chasing pointers.
+ * <br><br>
+ * Prefix searches run directly on the blob; Term objects are only materialized, 
+ * through {@link #term(int)}, for the results handed back to a caller.
+ * <br><br>
+ * Weights are kept as long keys, the raw bits of the double: for the non-negative 
+ * weights a Term allows, comparing the bits as longs orders them exactly as the 
+ * doubles, so ranking compares plain longs with no unboxing or comparator.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+class TermStore {
+    private final long[] keys;		// keys[i] = key(weight of term i).
+    private final int[] offsets;	// Query i is chars[offsets[i] .. offsets[i + 1]).
+    private final char[] chars;
+
+    /**
+     * Copies the given terms, which must already be sorted, into the store.
+     * @param terms: sorted terms to store.
+     */
+    TermStore(Term[] terms) {
+        int n = terms.length;
+        long length = 0;
+        for (Term term : terms) {
+        	length += term.query().length();
+        }
+        if (length > Integer.MAX_VALUE) {
+        	throw new IllegalArgumentException("Queries exceed 2^31 chars.");
+        }
+        keys = new long[n];
+        offsets = new int[n + 1];
+        chars = new char[(int) length];
+        int offset = 0;
+        for (int i = 0; i < n; i++) {
+        	String query = terms[i].query();
+        	query.getChars(0, query.length(), chars, offset);
+        	keys[i] = key(terms[i].weight());
+        	offsets[i] = offset;
+        	offset += query.length();
+        }
+        offsets[n] = offset;
+    }
+
+    // Returns the number of terms in the store.
+    int size() {
+        return keys.length;
+    }
+
+    // Returns an estimate of the heap used by the three arrays, in bytes.
+    long bytes() {
+        return bytes(keys.length, chars.length);
+    }
+
+    // Returns bytes() of a store of the given number of terms and query chars, so other 
+    // engines can report it without building one.
+    static long bytes(long terms, long chars) {
+        return 8 * terms + 4 * (terms + 1) + 2 * chars + 3 * 16;
+    }
+
+    // Returns the weight of term i.
+    double weight(int i) {
+        return Double.longBitsToDouble(keys[i]);
+    }
+
+    // Returns the weight key of term i.
+    long key(int i) {
+        return keys[i];
+    }
+
+    // Returns the key array itself, for indexes over it; it must not be modified.
+    long[] keys() {
+        return keys;
+    }
+
+    /**
+     * Returns the order-preserving long key of a non-negative weight (or NaN, which 
+     * sorts above every other weight, as in Double.compare). Adding 0.0 turns -0.0, 
+     * which Term accepts, into 0.0.
+     */
+    static long key(double weight) {
+        return Double.doubleToLongBits(weight + 0.0);
+    }
+
+    // Returns the query of term i (allocates a String).
+    String query(int i) {
+        return new String(chars, offsets[i], offsets[i + 1] - offsets[i]);
+    }
+
+    // Materializes term i.
+    Term term(int i) {
+        return new Term(query(i), weight(i));
+    }
+
+    // Returns the number of chars in query i.
+    int length(int i) {
+        return offsets[i + 1] - offsets[i];
+    }
+
+    // Returns char j of query i.
+    char charAt(int i, int j) {
+        return chars[offsets[i] + j];
+    }
+
+    /**
+     * Compares the first |prefix| chars of query i against the prefix, in place. 
+     * Same ordering as Term.byPrefixOrder(prefix.length()).
+     */
+    int compareToPrefix(int i, String prefix) {
+        int from = offsets[i],
+        	length = offsets[i + 1] - from,
+        	common = Math.min(length, prefix.length());
+        for (int j = 0; j < common; j++) {
+        	char c = chars[from + j];
+        	char p = prefix.charAt(j);
+        	if (c != p) {
+        		return c - p;
+        	}
+        }
+        return length < prefix.length() ? -1 : 0;
+    }
+
+    /**
+     * Returns the half-open range [start, end) of terms in [low, high) that start with 
+     * the given prefix, packed as (start << 32 | end) so the lookup allocates nothing. 
+     * Both ends share one descent until the first match is hit, as in 
+     * BinarySearchDeluxe.equalRange.
+     */
+    long equalRange(String prefix, int low, int high) {
+    	return equalRange(prefix, low, high, null);
+    }
+
+    // As above, adding the number of prefix compares made to compares[0] if compares 
+    // is not null (for QueryMetrics).
+    long equalRange(String prefix, int low, int high, int[] compares) {
+    	while (low < high) {
+    		int mid = (low + high) >>> 1;
+    		int cmp = compare(mid, prefix, compares);
+    		if (cmp < 0) low = mid + 1;
+    		else if (cmp > 0) high = mid;
+    		else return range(firstMatch(prefix, low, mid, compares), lastMatch(prefix, mid + 1, high, compares));
+    	}
+    	return range(low, low);
+    }
+
+    // Shorthand for equalRange over the whole store.
+    long equalRange(String prefix) {
+    	return equalRange(prefix, 0, keys.length);
+    }
+
+    /**
+     * Returns the match range of the prefix, packed as above, knowing that it starts at 
+     * or after from. Both ends are found by galloping (exponential search) forward, so a 
+     * range close to from costs O(log distance) compares rather than O(log N).
+     */
+    long gallopRange(String prefix, int from) {
+    	int start = gallop(prefix, from, 0);
+    	return range(start, gallop(prefix, start, 1));
+    }
+
+    // First index i >= from with compareToPrefix(i, prefix) >= bound (0 or 1), or size().
+    private int gallop(String prefix, int from, int bound) {
+    	int n = keys.length;
+    	int low = from,
+    		high = from;
+    	for (long step = 1; high < n && compareToPrefix(high, prefix) < bound; step <<= 1) {
+    		low = high + 1;
+    		high = (int) Math.min(n, from + step);
+    	}
+    	while (low < high) {
+    		int mid = (low + high) >>> 1;
+    		if (compareToPrefix(mid, prefix) < bound) low = mid + 1;
+    		else high = mid;
+    	}
+    	return low;
+    }
+
+    // First index in [low, high) that matches the prefix, knowing query high matches.
+    private int firstMatch(String prefix, int low, int high, int[] compares) {
+    	while (low < high) {
+    		int mid = (low + high) >>> 1;
+    		if (compare(mid, prefix, compares) < 0) low = mid + 1;
+    		else high = mid;
+    	}
+    	return low;
+    }
+
+    // First index in [low, high) past the matches, knowing query low - 1 matches.
+    private int lastMatch(String prefix, int low, int high, int[] compares) {
+    	while (low < high) {
+    		int mid = (low + high) >>> 1;
+    		if (compare(mid, prefix, compares) <= 0) low = mid + 1;
+    		else high = mid;
+    	}
+    	return low;
+    }
+
+    // compareToPrefix, counted in compares[0] unless compares is null.
+    private int compare(int i, String prefix, int[] compares) {
+    	if (compares != null) compares[0]++;
+    	return compareToPrefix(i, prefix);
+    }
+
+    // Packs a half-open range into a long.
+    static long range(int start, int end) {
+    	return ((long) start << 32) | end;
+    }
+
+    // Start of a packed range.
+    static int start(long range) {
+    	return (int) (range >>> 32);
+    }
+
+    // End (exclusive) of a packed range.
+    static int end(long range) {
+    	return (int) range;
+    }
+}
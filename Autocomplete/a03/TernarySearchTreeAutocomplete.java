@@ -0,0 +1,351 @@
+package a03;
+
+import java.util.Arrays;
+
+/**
+ * Autocomplete engine built on a ternary search tree. Each node holds one character 
+ * and three links, so a sparse Unicode alphabet costs nothing for the characters it 
+ * does not use, unlike an array-per-node trie. Nodes are not objects: they live in 
+ * parallel primitive arrays indexed by node id, which keeps the per-node cost to 26 
+ * bytes with no headers or pointers for the garbage collector to trace.
+ * <br><br>
+ * Every node is annotated with the number of terms in its subtree (its lo, eq and hi 
+ * links together) and the id of the heaviest of them, so topMatches is a best-first 
+ * search that only expands subtrees that can still beat the k-th best term found so 
+ * far. Term ids are positions in sorted order, which is also the tree's in-order, so 
+ * the tree itself spells every query: only the weights are kept beside it, and a 
+ * result's query is rebuilt by walking down to its id with the counts. See 
+ * {@link #memoryReport()}.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class TernarySearchTreeAutocomplete implements AutocompleteEngine {
+    private static final int NONE = -1;
+
+    private final double[] weights;	// weights[id], ids in sorted order of query.
+    private final int emptyTerms;	// Terms with an empty query are ids [0, emptyTerms).
+    private final long storeBytes;	// TermStore.bytes() of the same terms, for memoryReport.
+    private int size;				// Number of nodes.
+    private char[] splitChar;
+    private int[] lo, eq, hi;
+    private int[] term;				// First term id ending at the node, or NONE.
+    private int[] count;			// Number of terms in the node's subtree.
+    private int[] best;				// Id of the heaviest term in the node's subtree.
+
+    /**
+     * Initializes the tree from the given array of terms.
+     * @param terms: terms to index; the array is sorted in place.
+     */
+    public TernarySearchTreeAutocomplete(Term[] terms) {
+        if (terms == null) {
+        	throw new NullPointerException();
+        }
+        for (Term x : terms) {
+            if (x == null) {
+                throw new NullPointerException();
+            }
+        }
+        Arrays.sort(terms);
+        weights = new double[terms.length];
+        long chars = 0;
+        for (int id = 0; id < terms.length; id++) {
+        	weights[id] = terms[id].weight();
+        	chars += terms[id].query().length();
+        }
+        storeBytes = TermStore.bytes(terms.length, chars);
+        int empty = 0;
+        while (empty < terms.length && terms[empty].query().isEmpty()) {
+        	empty++;
+        }
+        emptyTerms = empty;
+
+        int capacity = Math.max(16, terms.length);
+        splitChar = new char[capacity];
+        lo = new int[capacity];
+        eq = new int[capacity];
+        hi = new int[capacity];
+        term = new int[capacity];
+        // Inserting medians first keeps the lo/hi links balanced.
+        insertBalanced(terms, empty, terms.length);
+        trim();
+        summarize(terms);
+    }
+
+    // Inserts the distinct queries of ids [from, to), middle first.
+    private void insertBalanced(Term[] terms, int from, int to) {
+        if (from >= to) {
+        	return;
+        }
+        int mid = (from + to) >>> 1;
+        // Duplicates share a node, which points at the first of them.
+        while (mid > from && terms[mid - 1].query().equals(terms[mid].query())) {
+        	mid--;
+        }
+        insert(terms[mid].query(), mid);
+        int next = mid + 1;
+        while (next < to && terms[next].query().equals(terms[mid].query())) {
+        	next++;
+        }
+        insertBalanced(terms, from, mid);
+        insertBalanced(terms, next, to);
+    }
+
+    // Inserts the (non-empty) query of term id.
+    private void insert(String query, int id) {
+        int length = query.length();
+        if (size == 0) {
+        	newNode(query.charAt(0));
+        }
+        int x = 0,
+        	d = 0;
+        while (true) {
+        	char c = query.charAt(d);
+        	// newNode may grow the arrays, so its result is stored only after it returns.
+        	if (c < splitChar[x]) {
+        		if (lo[x] == NONE) {
+        			int y = newNode(c);
+        			lo[x] = y;
+        		}
+        		x = lo[x];
+        	}
+        	else if (c > splitChar[x]) {
+        		if (hi[x] == NONE) {
+        			int y = newNode(c);
+        			hi[x] = y;
+        		}
+        		x = hi[x];
+        	}
+        	else if (d < length - 1) {
+        		d++;
+        		if (eq[x] == NONE) {
+        			int y = newNode(query.charAt(d));
+        			eq[x] = y;
+        		}
+        		x = eq[x];
+        	}
+        	else {
+        		term[x] = id;
+        		return;
+        	}
+        }
+    }
+
+    private int newNode(char c) {
+        if (size == splitChar.length) {
+        	int capacity = 2 * size;
+        	splitChar = Arrays.copyOf(splitChar, capacity);
+        	lo = Arrays.copyOf(lo, capacity);
+        	eq = Arrays.copyOf(eq, capacity);
+        	hi = Arrays.copyOf(hi, capacity);
+        	term = Arrays.copyOf(term, capacity);
+        }
+        splitChar[size] = c;
+        lo[size] = eq[size] = hi[size] = term[size] = NONE;
+        return size++;
+    }
+
+    private void trim() {
+        splitChar = Arrays.copyOf(splitChar, size);
+        lo = Arrays.copyOf(lo, size);
+        eq = Arrays.copyOf(eq, size);
+        hi = Arrays.copyOf(hi, size);
+        term = Arrays.copyOf(term, size);
+    }
+
+    /**
+     * Computes count and best bottom-up. A child is always created after its parent, 
+     * so walking the ids in descending order visits children first.
+     */
+    private void summarize(Term[] terms) {
+        count = new int[size];
+        best = new int[size];
+        for (int x = size - 1; x >= 0; x--) {
+        	int c = 0;
+        	int heaviest = NONE;
+        	if (term[x] != NONE) {
+        		String query = terms[term[x]].query();
+        		for (int id = term[x]; id < terms.length && terms[id].query().equals(query); id++) {
+        			c++;
+        			heaviest = heavier(heaviest, id);
+        		}
+        	}
+        	for (int child : new int[] { lo[x], eq[x], hi[x] }) {
+        		if (child != NONE) {
+        			c += count[child];
+        			heaviest = heavier(heaviest, best[child]);
+        		}
+        	}
+        	count[x] = c;
+        	best[x] = heaviest;
+        }
+    }
+
+    private int heavier(int i, int j) {
+        return i == NONE || weights[j] > weights[i] ? j : i;
+    }
+
+    // Number of terms ending exactly at node x (more than one only for duplicate queries).
+    private int ownTerms(int x) {
+        int own = count[x];
+        if (lo[x] != NONE) own -= count[lo[x]];
+        if (eq[x] != NONE) own -= count[eq[x]];
+        if (hi[x] != NONE) own -= count[hi[x]];
+        return own;
+    }
+
+    private int count(int x) {
+        return x == NONE ? 0 : count[x];
+    }
+
+    /**
+     * Returns the node where the last character of the (non-empty) prefix matches, 
+     * or NONE if no query starts with it.
+     */
+    private int find(String prefix) {
+        int x = size == 0 ? NONE : 0,
+        	d = 0;
+        while (x != NONE) {
+        	char c = prefix.charAt(d);
+        	if (c < splitChar[x]) x = lo[x];
+        	else if (c > splitChar[x]) x = hi[x];
+        	else if (d < prefix.length() - 1) {
+        		d++;
+        		x = eq[x];
+        	}
+        	else return x;
+        }
+        return NONE;
+    }
+
+    /**
+     * Rebuilds the query of term id. In-order, a subtree holds its lo subtree's 
+     * terms, then those ending at its root, then its eq and hi subtrees', so the 
+     * counts lead from the root to the id one node per character comparison.
+     */
+    private String query(int id) {
+        StringBuilder sb = new StringBuilder();
+        int x = 0,
+        	first = emptyTerms;	// Id of the first term in x's subtree.
+        while (id >= emptyTerms) {
+        	if (id < first + count(lo[x])) {
+        		x = lo[x];
+        		continue;
+        	}
+        	first += count(lo[x]);
+        	int own = ownTerms(x);
+        	if (id < first + own) {
+        		sb.append(splitChar[x]);
+        		break;
+        	}
+        	first += own;
+        	if (id < first + count(eq[x])) {
+        		sb.append(splitChar[x]);
+        		x = eq[x];
+        	}
+        	else {
+        		first += count(eq[x]);
+        		x = hi[x];
+        	}
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public Term[] allMatches(String prefix) {
+        return topMatches(prefix, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Term[] topMatches(String prefix, int k) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        if (k < 0) {
+        	throw new IllegalArgumentException();
+        }
+        int matches = numberOfMatches(prefix);
+        if (matches == 0 || k == 0) {
+        	return new Term[0];
+        }
+        
+        // Queue items are subtrees (node id >= 0, keyed by their heaviest term) and 
+        // single terms (encoded as -(id + 1), keyed by their weight); keys are negated 
+        // weight keys, so the min-heap polls the heaviest first.
+        KeyHeap queue = new KeyHeap(16);
+        if (prefix.isEmpty()) {
+        	for (int id = 0; id < emptyTerms; id++) {
+        		add(queue, -(id + 1));
+        	}
+        	if (size > 0) {
+        		add(queue, 0);
+        	}
+        }
+        else {
+        	int x = find(prefix);
+        	for (int i = 0; i < ownTerms(x); i++) {
+        		add(queue, -(term[x] + i + 1));
+        	}
+        	if (eq[x] != NONE) {
+        		add(queue, eq[x]);
+        	}
+        }
+        
+        Term[] top = new Term[Math.min(k, matches)];
+        int found = 0;
+        while (found < top.length) {
+        	int next = queue.poll();
+        	if (next < 0) {
+        		int id = -next - 1;
+        		top[found++] = new Term(query(id), weights[id]);
+        		continue;
+        	}
+        	for (int i = 0; i < ownTerms(next); i++) {
+        		add(queue, -(term[next] + i + 1));
+        	}
+        	if (lo[next] != NONE) add(queue, lo[next]);
+        	if (eq[next] != NONE) add(queue, eq[next]);
+        	if (hi[next] != NONE) add(queue, hi[next]);
+        }
+        return top;
+    }
+
+    private void add(KeyHeap queue, int item) {
+        int id = item < 0 ? -item - 1 : best[item];
+        queue.add(-TermStore.key(weights[id]), item);
+    }
+
+    @Override
+    public int numberOfMatches(String prefix) {
+        if (prefix == null) {
+        	throw new NullPointerException();
+        }
+        if (prefix.isEmpty()) {
+        	return weights.length;
+        }
+        int x = find(prefix);
+        if (x == NONE) {
+        	return 0;
+        }
+        return ownTerms(x) + (eq[x] == NONE ? 0 : count[eq[x]]);
+    }
+
+    /**
+     * Returns an estimate of the heap used by this engine, broken down by array, next 
+     * to the footprint of an {@link Autocomplete} over the same terms (which is its 
+     * TermStore alone, plus 8 bytes per term if it has a range-max index).
+     */
+    public String memoryReport() {
+        long nodes = (long) size * (2 + 4 + 4 + 4 + 4 + 4 + 4);
+        long weightBytes = 8L * weights.length;
+        StringBuilder sb = new StringBuilder();
+        sb.append("Ternary search tree: ").append(weights.length).append(" terms, ").append(size).append(" nodes\n");
+        sb.append("  node arrays: ").append(nodes).append(" bytes (")
+        	.append(size == 0 ? 0 : nodes / size).append(" per node)\n");
+        sb.append("  weights:     ").append(weightBytes).append(" bytes\n");
+        sb.append("  total:       ").append(nodes + weightBytes).append(" bytes\n");
+        sb.append("Autocomplete:  ").append(storeBytes).append(" bytes (")
+        	.append(storeBytes + 8L * weights.length).append(" with range-max index)");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,182 @@
+package a03;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ranks a range of weight keys (see TermStore.key) in descending order with an LSD
+ * radix sort, instead of sorting Terms with a Comparator. The keys are copied into a
+ * primitive array beside their indices and sorted 8 bits at a time; a pass is skipped
+ * when every key has the same digit, which for doubles of similar size is most of the
+ * low and high bytes. Each pass is stable, so equal weights keep their index order,
+ * exactly as the stable Arrays.sort they replace did.
+ * <br><br>
+ * Short ranges are insertion sorted. Very long ones are sorted in parallel on the
+ * common fork-join pool: every pass counts digits per chunk in parallel, then each
+ * chunk scatters its keys to offsets computed from all the counts, which keeps the
+ * pass stable.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+final class WeightSort {
+    private static final int SMALL = 64;			// Longest range that is insertion sorted.
+    private static final int PARALLEL = 1 << 17;	// Shortest range that is sorted in parallel.
+    private static final int RADIX = 256;
+
+    private WeightSort() { }
+
+    /**
+     * Returns the indices start..end-1 ordered by descending key, ties in index order.
+     * @param keys: non-negative weight keys.
+     */
+    static int[] descending(long[] keys, int start, int end) {
+        int n = end - start;
+        // Descending order of a key is ascending order of MAX_VALUE - key, which
+        // stays non-negative, so the top digit needs no sign handling.
+        long[] k = new long[n];
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++) {
+        	k[i] = Long.MAX_VALUE - keys[start + i];
+        	index[i] = start + i;
+        }
+        if (n <= SMALL) {
+        	insertionSort(k, index);
+        	return index;
+        }
+        if (n >= PARALLEL && ForkJoinPool.getCommonPoolParallelism() > 1) {
+        	return parallelRadixSort(k, index);
+        }
+        return radixSort(k, index);
+    }
+
+    private static void insertionSort(long[] k, int[] index) {
+        for (int i = 1; i < k.length; i++) {
+        	long key = k[i];
+        	int value = index[i];
+        	int j = i - 1;
+        	while (j >= 0 && k[j] > key) {
+        		k[j + 1] = k[j];
+        		index[j + 1] = index[j];
+        		j--;
+        	}
+        	k[j + 1] = key;
+        	index[j + 1] = value;
+        }
+    }
+
+    private static int[] radixSort(long[] k, int[] index) {
+        int n = k.length;
+        // One counting pass for all eight digits.
+        int[][] counts = new int[8][RADIX];
+        for (long key : k) {
+        	for (int d = 0; d < 8; d++) {
+        		counts[d][(int) (key >>> (8 * d)) & (RADIX - 1)]++;
+        	}
+        }
+        long[] k2 = new long[n];
+        int[] index2 = new int[n];
+        for (int d = 0; d < 8; d++) {
+        	int[] count = counts[d];
+        	if (count[(int) (k[0] >>> (8 * d)) & (RADIX - 1)] == n) {
+        		continue;	// Every key has this digit.
+        	}
+        	int sum = 0;
+        	for (int b = 0; b < RADIX; b++) {
+        		int c = count[b];
+        		count[b] = sum;
+        		sum += c;
+        	}
+        	int shift = 8 * d;
+        	for (int i = 0; i < n; i++) {
+        		int to = count[(int) (k[i] >>> shift) & (RADIX - 1)]++;
+        		k2[to] = k[i];
+        		index2[to] = index[i];
+        	}
+        	long[] tk = k; k = k2; k2 = tk;
+        	int[] ti = index; index = index2; index2 = ti;
+        }
+        return index;
+    }
+
+    private static int[] parallelRadixSort(long[] k, int[] index) {
+        final int n = k.length;
+        final int chunks = Math.min(4 * ForkJoinPool.getCommonPoolParallelism(), n / SMALL);
+        final int[] bounds = new int[chunks + 1];
+        for (int c = 0; c <= chunks; c++) {
+        	bounds[c] = (int) ((long) n * c / chunks);
+        }
+        final int[][] counts = new int[chunks][RADIX];
+        long[] k2 = new long[n];
+        int[] index2 = new int[n];
+        for (int d = 0; d < 8; d++) {
+        	final int shift = 8 * d;
+        	final long[] from = k;
+        	forEachChunk(chunks, new Chunk() {
+        		public void run(int c) {
+        			int[] count = counts[c];
+        			Arrays.fill(count, 0);
+        			for (int i = bounds[c]; i < bounds[c + 1]; i++) {
+        				count[(int) (from[i] >>> shift) & (RADIX - 1)]++;
+        			}
+        		}
+        	});
+        	// Offsets: digit b of chunk c goes after all smaller digits, then after
+        	// digit b of the earlier chunks.
+        	int sum = 0;
+        	boolean single = false;
+        	for (int b = 0; b < RADIX && !single; b++) {
+        		int total = 0;
+        		for (int c = 0; c < chunks; c++) {
+        			int x = counts[c][b];
+        			counts[c][b] = sum + total;
+        			total += x;
+        		}
+        		single = total == n;
+        		sum += total;
+        	}
+        	if (single) {
+        		continue;	// Every key has this digit.
+        	}
+        	final int[] fromIndex = index;
+        	final long[] toKeys = k2;
+        	final int[] toIndex = index2;
+        	forEachChunk(chunks, new Chunk() {
+        		public void run(int c) {
+        			int[] offset = counts[c];
+        			for (int i = bounds[c]; i < bounds[c + 1]; i++) {
+        				int to = offset[(int) (from[i] >>> shift) & (RADIX - 1)]++;
+        				toKeys[to] = from[i];
+        				toIndex[to] = fromIndex[i];
+        			}
+        		}
+        	});
+        	long[] tk = k; k = k2; k2 = tk;
+        	int[] ti = index; index = index2; index2 = ti;
+        }
+        return index;
+    }
+
+    private interface Chunk {
+        void run(int c);
+    }
+
+    // Runs the chunk tasks 0..chunks-1 on the common pool and waits for them.
+    private static void forEachChunk(int chunks, final Chunk chunk) {
+        List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(chunks);
+        for (int c = 0; c < chunks; c++) {
+        	final int id = c;
+        	tasks.add(new RecursiveAction() {
+        		@Override
+        		protected void compute() {
+        			chunk.run(id);
+        		}
+        	});
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+}
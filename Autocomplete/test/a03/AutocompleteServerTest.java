@@ -0,0 +1,109 @@
+package a03;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link AutocompleteServer}, mostly through {@code respond} without a socket.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+class AutocompleteServerTest {
+    private AutocompleteServer server;
+
+    // An engine that rejects every query, as a broken shard might.
+    private static final AutocompleteEngine FAILING = new AutocompleteEngine() {
+        public Term[] allMatches(String prefix) {
+            throw new IllegalArgumentException("engine rejected " + prefix);
+        }
+
+        public Term[] topMatches(String prefix, int k) {
+            throw new IllegalStateException("engine\nfailed");
+        }
+
+        public int numberOfMatches(String prefix) {
+            return 7;
+        }
+    };
+
+    private String respond(AutocompleteEngine engine, String request) throws IOException {
+        if (server == null) {
+        	server = new AutocompleteServer(engine, 0);
+        }
+        StringWriter out = new StringWriter();
+        server.respond(request, out, null);
+        return out.toString();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        if (server != null) server.close();
+    }
+
+    @Test
+    void malformedRequestsAreBadArguments() throws IOException {
+        assertEquals("ERROR bad argument: x a\n", respond(FAILING, "TOP x a"));
+        assertEquals("ERROR bad argument: -1 a\n", respond(FAILING, "TOP -1 a"));
+        assertEquals("ERROR unknown command: FOO\n", respond(FAILING, "FOO a"));
+    }
+
+    // An engine's IllegalArgumentException is its failure, not a malformed request.
+    @Test
+    void engineFailuresAreReportedOnOneLine() throws IOException {
+        String all = respond(FAILING, "ALL a");
+        assertTrue(all.startsWith("ERROR java.lang.IllegalArgumentException: engine rejected a"), all);
+        assertEquals("ERROR java.lang.IllegalStateException: engine failed\n", respond(FAILING, "TOP 3 a"));
+        assertEquals("7\n", respond(FAILING, "COUNT a"));
+    }
+
+    @Test
+    void lineBreaksInQueriesAreEscaped() throws IOException {
+        Autocomplete autocomplete = new Autocomplete(new Term[] {
+        		new Term("a\r\nTOP 1 a", 3), new Term("a\\n", 2), new Term("ab", 1) });
+        assertEquals("3.0\ta\\r\\nTOP 1 a\n2.0\ta\\\\n\n", respond(autocomplete, "TOP 2 a"));
+        for (String query : new String[] { "", "plain", "a\r\nb", "\\", "\\n\n\\r", "end\\" }) {
+        	assertEquals(query, AutocompleteServer.unescape(AutocompleteServer.escape(query)));
+        }
+    }
+
+    // A query with a line break used to split into two reply lines and desync the client.
+    @Test
+    void remoteShardReadsEscapedQueries() throws IOException {
+        Term[] terms = { new Term("a\r\nb", 3), new Term("a\\", 2), new Term("ab", 1) };
+        server = new AutocompleteServer(new Autocomplete(terms), 0);
+        Thread serving = new Thread(new Runnable() {
+            public void run() {
+                try {
+                	server.serve();
+                }
+                catch (IOException e) {
+                	// Closed by the test.
+                }
+            }
+        });
+        serving.setDaemon(true);
+        serving.start();
+        RemoteShard shard = new RemoteShard(InetAddress.getLoopbackAddress().getHostAddress(), server.getPort());
+        try {
+        	Term[] top = shard.topMatches("a", Integer.MAX_VALUE);
+        	String[] queries = new String[top.length];
+        	for (int i = 0; i < top.length; i++) {
+        		queries[i] = top[i].query();
+        	}
+        	assertEquals(Arrays.asList("a\r\nb", "a\\", "ab"), Arrays.asList(queries));
+        	assertEquals(3, shard.numberOfMatches("a"));
+        }
+        finally {
+        	shard.close();
+        }
+    }
+}
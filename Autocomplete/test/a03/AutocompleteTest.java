@@ -0,0 +1,48 @@
+package a03;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link Autocomplete}.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+class AutocompleteTest {
+
+    private static Term[] terms() {
+        return new Term[] { new Term("ab", 1), new Term("abc", 4), new Term("abd", 2),
+        		new Term("b", 3), new Term("ba", 5) };
+    }
+
+    // Term has no equals, so results are compared as "weight TAB query" strings.
+    private static String[] strings(Term[] terms) {
+        String[] strings = new String[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+        	strings[i] = terms[i].toString();
+        }
+        return strings;
+    }
+
+    // A prefix the precomputed table covers is answered without a range search.
+    @Test
+    void shortPrefixTableSkipsTheRangeSearch() {
+        Autocomplete autocomplete = new Autocomplete(terms(), false, 2, 2);
+        QueryMetrics metrics = new QueryMetrics();
+        autocomplete.setMetrics(metrics);
+        Term[] top = autocomplete.topMatches("ab", 2);
+        assertEquals("abc", top[0].query());
+        assertEquals("abd", top[1].query());
+        assertEquals(0, autocomplete.topMatches("zz", 1).length);
+        assertEquals(0, metrics.getSearchCompares());
+
+        // Not covered: longer than the table's depth, or more than its k.
+        assertEquals(1, autocomplete.topMatches("abc", 2).length);
+        assertEquals(3, autocomplete.topMatches("ab", 3).length);
+        assertEquals(4, metrics.getTopMatchesQueries());
+        assertArrayEquals(strings(autocomplete.allMatches("ab")), strings(autocomplete.topMatches("ab", 3)));
+    }
+}
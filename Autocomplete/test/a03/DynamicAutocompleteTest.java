@@ -0,0 +1,50 @@
+package a03;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link DynamicAutocomplete}.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+class DynamicAutocompleteTest {
+
+    private static Term[] terms() {
+        return new Term[] { new Term("apple", 5), new Term("apricot", 3), new Term("banana", 4) };
+    }
+
+    private static String[] queries(Term[] terms) {
+        String[] queries = new String[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+        	queries[i] = terms[i].query();
+        }
+        return queries;
+    }
+
+    // k + shadowed used to overflow to a negative request size for the base.
+    @Test
+    void topMatchesWithMaxKAndShadowedBaseTerm() {
+        for (boolean rangeIndex : new boolean[] { false, true }) {
+        	DynamicAutocomplete autocomplete = new DynamicAutocomplete(terms(), rangeIndex, Integer.MAX_VALUE);
+        	autocomplete.upsert("apricot", 9);
+        	autocomplete.upsert("avocado", 1);
+        	Term[] top = autocomplete.topMatches("a", Integer.MAX_VALUE);
+        	assertArrayEquals(new String[] { "apricot", "apple", "avocado" }, queries(top));
+        	assertEquals(9, top[0].weight());
+        	assertEquals(3, autocomplete.numberOfMatches("a"));
+        	assertArrayEquals(queries(autocomplete.allMatches("")), queries(autocomplete.topMatches("", Integer.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void removedBaseTermIsNotReturned() {
+        DynamicAutocomplete autocomplete = new DynamicAutocomplete(terms(), true, Integer.MAX_VALUE);
+        autocomplete.remove("apple");
+        assertArrayEquals(new String[] { "apricot" }, queries(autocomplete.topMatches("ap", Integer.MAX_VALUE)));
+        assertEquals(2, autocomplete.numberOfMatches(""));
+    }
+}
@@ -0,0 +1,192 @@
+package a03;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs every prefix engine against the brute-force {@link Autocomplete} on the same
+ * dictionary. Weights are drawn from a small range, so most results contain ties;
+ * engines may order equal weights differently, so results are compared by their
+ * weight sequence, their prefix, and (for k = Integer.MAX_VALUE) the whole set.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+class EngineDifferentialTest {
+    private static final String ALPHABET = "abc";
+    private static final int[] KS = { 0, 1, 3, Integer.MAX_VALUE };
+
+    @TempDir
+    Path directory;
+
+    private final List<Closeable> closeables = new ArrayList<Closeable>();
+
+    // Distinct queries, since the FST collapses duplicates, with weights 0 to 4.
+    private static Term[] dictionary() {
+        Random random = new Random(20261017);
+        Set<String> queries = new LinkedHashSet<String>();
+        while (queries.size() < 300) {
+        	int length = 1 + random.nextInt(6);
+        	StringBuilder query = new StringBuilder();
+        	for (int i = 0; i < length; i++) {
+        		query.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        	}
+        	queries.add(query.toString());
+        }
+        Term[] terms = new Term[queries.size()];
+        int i = 0;
+        for (String query : queries) {
+        	terms[i++] = new Term(query, random.nextInt(5));
+        }
+        return terms;
+    }
+
+    // "", every prefix of up to three letters, and a few that match nothing.
+    private static List<String> prefixes() {
+        List<String> prefixes = new ArrayList<String>();
+        prefixes.add("");
+        for (int i = 0; i < prefixes.size() && prefixes.get(i).length() < 3; i++) {
+        	for (int c = 0; c < ALPHABET.length(); c++) {
+        		prefixes.add(prefixes.get(i) + ALPHABET.charAt(c));
+        	}
+        }
+        prefixes.addAll(Arrays.asList("d", "abd", "aaaaaaa", "cccccc"));
+        return prefixes;
+    }
+
+    private Map<String, AutocompleteEngine> engines(Term[] terms) throws IOException {
+        Map<String, AutocompleteEngine> engines = new LinkedHashMap<String, AutocompleteEngine>();
+        engines.put("Autocomplete with range index", new Autocomplete(terms.clone(), true));
+        engines.put("Autocomplete with short-prefix table", new Autocomplete(terms.clone(), false, 2, 3));
+        engines.put("RadixTrieAutocomplete", new RadixTrieAutocomplete(terms.clone()));
+        engines.put("RadixTrieAutocomplete, cachedK 2", new RadixTrieAutocomplete(terms.clone(), 2));
+        engines.put("TernarySearchTreeAutocomplete", new TernarySearchTreeAutocomplete(terms.clone()));
+        engines.put("FstAutocomplete", new FstAutocomplete(terms.clone()));
+        engines.put("CachingAutocomplete", new CachingAutocomplete(new Autocomplete(terms.clone()), 1 << 20));
+        engines.put("DynamicAutocomplete", new DynamicAutocomplete(terms.clone(), true, 16));
+        engines.put("DynamicAutocomplete, upserted with merges", upserted(terms, false, 16));
+        engines.put("DynamicAutocomplete, upserted without merges", upserted(terms, true, Integer.MAX_VALUE));
+
+        ShardedAutocomplete sharded = ShardedAutocomplete.inProcess(terms.clone(), 3);
+        closeables.add(sharded);
+        engines.put("ShardedAutocomplete", sharded);
+
+        Path compiled = directory.resolve("dictionary.bin");
+        DictionaryCompiler.compile(terms.clone(), compiled);
+        engines.put("MappedAutocomplete", new MappedAutocomplete(compiled));
+
+        ReloadableAutocomplete reloadable = new ReloadableAutocomplete(text(terms), false);
+        closeables.add(reloadable);
+        engines.put("ReloadableAutocomplete", reloadable);
+        return engines;
+    }
+
+    // Half the terms in the base, the rest upserted through merges; some of both are
+    // first given a wrong weight, so unmerged upserts shadow base terms.
+    private static DynamicAutocomplete upserted(Term[] terms, boolean rangeIndex, int mergeThreshold) {
+        int half = terms.length / 2;
+        DynamicAutocomplete dynamic = new DynamicAutocomplete(Arrays.copyOf(terms, half), rangeIndex, mergeThreshold);
+        for (int i = 0; i < terms.length; i++) {
+        	if (i < half && i % 5 != 0) {
+        		continue;
+        	}
+        	if (i % 3 == 0) {
+        		dynamic.upsert(terms[i].query(), 100);
+        	}
+        	dynamic.upsert(terms[i].query(), terms[i].weight());
+        }
+        return dynamic;
+    }
+
+    // Writes the terms in the format DictionaryLoader reads.
+    private Path text(Term[] terms) throws IOException {
+        Path file = directory.resolve("dictionary.txt");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+        	out.write(terms.length + "\n");
+        	for (Term term : terms) {
+        		out.write(term + "\n");
+        	}
+        }
+        return file;
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        for (Closeable closeable : closeables) {
+        	closeable.close();
+        }
+    }
+
+    private static double[] weights(Term[] terms) {
+        double[] weights = new double[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+        	weights[i] = terms[i].weight();
+        }
+        return weights;
+    }
+
+    // Term has no equals, so whole results are compared as sorted "weight TAB query" strings.
+    private static String[] sorted(Term[] terms) {
+        String[] strings = new String[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+        	strings[i] = terms[i].toString();
+        }
+        Arrays.sort(strings);
+        return strings;
+    }
+
+    private static void assertSame(String message, Term[] expected, Term[] actual, String prefix) {
+        assertArrayEquals(weights(expected), weights(actual), message);
+        for (Term term : actual) {
+        	assertTrue(term.query().startsWith(prefix), message + ": " + term);
+        }
+    }
+
+    @Test
+    void everyEngineAgreesWithAutocomplete() throws IOException {
+        Term[] terms = dictionary();
+        Autocomplete reference = new Autocomplete(terms.clone());
+        Map<String, AutocompleteEngine> engines = engines(terms);
+        for (String prefix : prefixes()) {
+        	Term[] all = reference.allMatches(prefix);
+        	int count = reference.numberOfMatches(prefix);
+        	assertEquals(all.length, count);
+        	for (Map.Entry<String, AutocompleteEngine> entry : engines.entrySet()) {
+        		String name = entry.getKey();
+        		AutocompleteEngine engine = entry.getValue();
+        		String message = name + ", prefix \"" + prefix + "\"";
+        		assertEquals(count, engine.numberOfMatches(prefix), message);
+        		assertSame(message + ", allMatches", all, engine.allMatches(prefix), prefix);
+        		assertArrayEquals(sorted(all), sorted(engine.allMatches(prefix)), message);
+        		// Twice, so the caching engines answer once from their cache.
+        		for (int round = 0; round < 2; round++) {
+        			for (int k : KS) {
+        				Term[] top = engine.topMatches(prefix, k);
+        				assertSame(message + ", k " + k, reference.topMatches(prefix, k), top, prefix);
+        			}
+        		}
+        		assertArrayEquals(sorted(all), sorted(engine.topMatches(prefix, Integer.MAX_VALUE)), message);
+        	}
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package a03;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link InfixAutocomplete}.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+class InfixAutocompleteTest {
+
+    private static InfixAutocomplete infix() {
+        return new InfixAutocomplete(new Term[] {
+        		new Term("new york city", 8), new Term("york", 3), new Term("yorkshire york", 5),
+        		new Term("new jersey", 8), new Term("newark", 1) });
+    }
+
+    private static String[] queries(Term[] terms) {
+        String[] queries = new String[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+        	queries[i] = terms[i].query();
+        }
+        return queries;
+    }
+
+    @Test
+    void matchesWordStartsOncePerTerm() {
+        InfixAutocomplete infix = infix();
+        String[] york = { "new york city", "yorkshire york", "york" };
+        assertArrayEquals(york, queries(infix.allMatches("york")));
+        assertArrayEquals(york, queries(infix.topMatches("york", Integer.MAX_VALUE)));
+        assertEquals(3, infix.numberOfMatches("york"));
+        assertArrayEquals(new String[] { "new york city" }, queries(infix.topMatches("york", 1)));
+        assertEquals(0, infix.topMatches("york", 0).length);
+    }
+
+    @Test
+    void equalWeightsKeepStoreOrder() {
+        InfixAutocomplete infix = infix();
+        assertArrayEquals(new String[] { "new jersey", "new york city", "newark" }, queries(infix.allMatches("new")));
+        assertEquals(5, infix.numberOfMatches(""));
+        assertEquals(0, infix.numberOfMatches("ork"));
+    }
+}
@@ -0,0 +1,83 @@
+package a03;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for {@link MappedAutocomplete}.
+ *
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+class MappedAutocompleteTest {
+    @TempDir
+    Path directory;
+
+    private byte[] compiled() throws IOException {
+        Path file = directory.resolve("valid.bin");
+        DictionaryCompiler.compile(new Term[] { new Term("ab", 1), new Term("abc", 4), new Term("b", 3) }, file);
+        return Files.readAllBytes(file);
+    }
+
+    private MappedAutocomplete open(byte[] bytes) throws IOException {
+        Path file = Files.createTempFile(directory, "dictionary", ".bin");
+        Files.write(file, bytes);
+        return new MappedAutocomplete(file);
+    }
+
+    private void assertRejected(byte[] bytes) throws IOException {
+        try {
+        	open(bytes);
+        	fail("Opened a bad dictionary of " + bytes.length + " bytes");
+        }
+        catch (IllegalArgumentException e) {
+        	// Expected.
+        }
+    }
+
+    @Test
+    void answersFromTheMapping() throws IOException {
+        MappedAutocomplete autocomplete = open(compiled());
+        assertEquals(3, autocomplete.size());
+        assertEquals(2, autocomplete.numberOfMatches("ab"));
+        Term[] top = autocomplete.topMatches("", Integer.MAX_VALUE);
+        assertEquals("abc", top[0].query());
+        assertEquals("b", top[1].query());
+        assertEquals("ab", top[2].query());
+        assertEquals(0, autocomplete.topMatches("a", 0).length);
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException {
+        byte[] bytes = compiled();
+        for (int length : new int[] { 0, 10, DictionaryCompiler.HEADER_BYTES, bytes.length - 1 }) {
+        	byte[] truncated = Arrays.copyOf(bytes, length);
+        	assertRejected(truncated);
+        }
+    }
+
+    @Test
+    void rejectsCorruptHeaderAndOffsets() throws IOException {
+        byte[] negative = compiled();
+        ByteBuffer.wrap(negative).putInt(8, -1);
+        assertRejected(negative);
+
+        byte[] blobLength = compiled();
+        ByteBuffer.wrap(blobLength).putInt(12, -4);
+        assertRejected(blobLength);
+
+        // The second offset of three terms, pointed past the end of the blob.
+        byte[] offset = compiled();
+        ByteBuffer.wrap(offset).putInt(DictionaryCompiler.HEADER_BYTES + 8 * 3 + 4, 1000);
+        assertRejected(offset);
+    }
+}
@@ -0,0 +1,96 @@
+package a03.bench;
+
+import a03.Autocomplete;
+import a03.Term;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Query benchmarks for {@link Autocomplete}: allMatches, topMatches (with and 
+ * without the range-max index) and numberOfMatches, across dictionary sizes and 
+ * prefix lengths 1 to 10. Each invocation queries the next of 1024 prefixes, except 
+ * the batch benchmarks, which query all 1024 at once and report the time per prefix.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutocompleteBenchmark {
+    @Param({ "10000", "1000000", "10000000" })
+    public int size;
+
+    @Param({ "1", "2", "3", "4", "5", "6", "7", "8", "9", "10" })
+    public int prefixLength;
+
+    private Autocomplete plain;
+    private Autocomplete indexed;
+    private String[] prefixes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Term[] terms = SyntheticDictionary.generate(size, 42);
+        prefixes = SyntheticDictionary.prefixes(terms, prefixLength, 1024, 7);
+        plain = new Autocomplete(terms.clone());
+        indexed = new Autocomplete(terms.clone(), true);
+    }
+
+    private String prefix() {
+        return prefixes[next++ & 1023];
+    }
+
+    @Benchmark
+    public Term[] allMatches() {
+        return plain.allMatches(prefix());
+    }
+
+    @Benchmark
+    public Term[] topMatches() {
+        return plain.topMatches(prefix(), 5);
+    }
+
+    @Benchmark
+    public Term[] topMatchesIndexed() {
+        return indexed.topMatches(prefix(), 5);
+    }
+
+    @Benchmark
+    public int numberOfMatches() {
+        return plain.numberOfMatches(prefix());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public Term[][] topMatchesOneByOne() {
+        Term[][] results = new Term[prefixes.length][];
+        for (int i = 0; i < prefixes.length; i++) {
+            results[i] = indexed.topMatches(prefixes[i], 5);
+        }
+        return results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public Term[][] batchTopMatches() {
+        return indexed.batchTopMatches(prefixes, 5);
+    }
+}
@@ -0,0 +1,74 @@
+package a03.bench;
+
+import a03.BinarySearchDeluxe;
+import a03.Term;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BinarySearchDeluxe} in isolation on a sorted Term[], searching 
+ * with {@code Term.byPrefixOrder} as Autocomplete originally did.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinarySearchBenchmark {
+    @Param({ "10000", "1000000", "10000000" })
+    public int size;
+
+    @Param({ "1", "3", "6", "10" })
+    public int prefixLength;
+
+    private Term[] terms;
+    private Term[] keys;
+    private Comparator<Term> comparator;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        terms = SyntheticDictionary.generate(size, 42);
+        Arrays.sort(terms);
+        String[] prefixes = SyntheticDictionary.prefixes(terms, prefixLength, 1024, 7);
+        keys = new Term[prefixes.length];
+        for (int i = 0; i < keys.length; i++) {
+        	keys[i] = new Term(prefixes[i], 0);
+        }
+        comparator = Term.byPrefixOrder(prefixLength);
+    }
+
+    @Benchmark
+    public int firstIndexOf() {
+        return BinarySearchDeluxe.firstIndexOf(terms, keys[next++ & 1023], comparator);
+    }
+
+    @Benchmark
+    public int lastIndexOf() {
+        return BinarySearchDeluxe.lastIndexOf(terms, keys[next++ & 1023], comparator);
+    }
+
+    @Benchmark
+    public int[] equalRange() {
+        return BinarySearchDeluxe.equalRange(terms, keys[next++ & 1023], comparator);
+    }
+}
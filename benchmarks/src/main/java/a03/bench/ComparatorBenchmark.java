@@ -0,0 +1,67 @@
+package a03.bench;
+
+import a03.Term;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures single compares of the Term comparators on random pairs of terms. 
+ * Run with {@code -prof gc} to check that they allocate nothing.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComparatorBenchmark {
+    @Param({ "1", "3", "6", "10" })
+    public int prefixLength;
+
+    private Term[] terms;
+    private Comparator<Term> byPrefix;
+    private Comparator<Term> byReverseWeight;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        terms = SyntheticDictionary.generate(4096, 42);
+        byPrefix = Term.byPrefixOrder(prefixLength);
+        byReverseWeight = Term.byReverseWeightOrder();
+    }
+
+    @Benchmark
+    public int byPrefixOrder() {
+        int i = next++;
+        return byPrefix.compare(terms[i & 4095], terms[(i * 31 + 17) & 4095]);
+    }
+
+    @Benchmark
+    public int byReverseWeightOrder() {
+        int i = next++;
+        return byReverseWeight.compare(terms[i & 4095], terms[(i * 31 + 17) & 4095]);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        int i = next++;
+        return terms[i & 4095].compareTo(terms[(i * 31 + 17) & 4095]);
+    }
+}
@@ -0,0 +1,61 @@
+package a03.bench;
+
+import a03.Autocomplete;
+import a03.Term;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Autocomplete} construction (sort plus term store, and optionally 
+ * the range-max index). The constructor sorts its argument in place, so every 
+ * invocation gets a fresh unsorted copy, prepared outside the measurement.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConstructionBenchmark {
+    @Param({ "10000", "1000000", "10000000" })
+    public int size;
+
+    private Term[] terms;
+    private Term[] copy;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        terms = SyntheticDictionary.generate(size, 42);
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        copy = terms.clone();
+    }
+
+    @Benchmark
+    public Autocomplete construct() {
+        return new Autocomplete(copy);
+    }
+
+    @Benchmark
+    public Autocomplete constructIndexed() {
+        return new Autocomplete(copy, true);
+    }
+}
@@ -0,0 +1,72 @@
+package a03.bench;
+
+import a03.Term;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates reproducible synthetic dictionaries for the benchmarks: distinct 
+ * lowercase queries whose letters follow a skewed (roughly English-like) 
+ * distribution, with Zipf-distributed weights, so short prefixes have wide match 
+ * ranges and a few very heavy terms, as in real query logs.
+ * 
+ * @author Kevin Mora
+ * @author Michael Barlow
+ */
+public class SyntheticDictionary {
+    private static final String LETTERS = "etaoinshrdlcumwfgypbvkjxqz";
+
+    /**
+     * Returns n distinct terms; the term of rank r (in generation order) has weight 
+     * about 10^9 / r, i.e. a Zipf distribution with exponent 1.
+     * @param n: number of terms.
+     * @param seed: random seed, so runs compare like with like.
+     */
+    public static Term[] generate(int n, long seed) {
+        Random random = new Random(seed);
+        Set<String> seen = new HashSet<String>(2 * n);
+        Term[] terms = new Term[n];
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < n) {
+        	sb.setLength(0);
+        	int length = 3 + random.nextInt(10);
+        	for (int j = 0; j < length; j++) {
+        		// Squaring skews the choice towards the front of LETTERS.
+        		double u = random.nextDouble();
+        		sb.append(LETTERS.charAt((int) (u * u * LETTERS.length())));
+        	}
+        	String query = sb.toString();
+        	if (seen.add(query)) {
+        		terms[i] = new Term(query, Math.floor(1e9 / (i + 1)));
+        		i++;
+        	}
+        }
+        return terms;
+    }
+
+    /**
+     * Returns count prefixes of the given length, cut from randomly chosen terms that 
+     * are long enough, so every prefix has at least one match.
+     */
+    public static String[] prefixes(Term[] terms, int length, int count, long seed) {
+        Random random = new Random(seed);
+        String[] prefixes = new String[count];
+        int i = 0;
+        while (i < count) {
+        	String query = query(terms[random.nextInt(terms.length)]);
+        	if (query.length() >= length) {
+        		prefixes[i++] = query.substring(0, length);
+        	}
+        }
+        return prefixes;
+    }
+
+    // Term only exposes its query through toString: weight, tab, query.
+    static String query(Term term) {
+        String s = term.toString();
+        return s.substring(s.indexOf('\t') + 1);
+    }
+}